@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled.benchmark;
+
+import com.pi4j.io.i2c.I2CBus;
+import de.pi3g.pi.oled.Font;
+import de.pi3g.pi.oled.OLEDDisplay;
+
+/**
+ * Measures the time needed to transmit a complete frame for different
+ * i2c chunk sizes (see OLEDDisplay.setChunkSize()). Run this on the target
+ * raspberry to find the fastest chunk size for it:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar de.pi3g.pi.oled.benchmark.ChunkSizeBenchmark [bus] [address] [frames]
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class ChunkSizeBenchmark {
+
+    private static final int DEFAULT_FRAMES = 100;
+    private static final int WARMUP_FRAMES = 10;
+
+    public static void main(String[] args) throws Exception {
+        final int busNumber = args.length > 0 ? Integer.decode(args[0]) : I2CBus.BUS_1;
+        final int address = args.length > 1 ? Integer.decode(args[1]) : 0x3C;
+        final int frames = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_FRAMES;
+
+        final OLEDDisplay display = new OLEDDisplay(busNumber, address);
+        final int maxChunkSize = display.probeChunkSize();
+        System.out.println("largest supported chunk size: " + maxChunkSize + " bytes");
+
+        for (int chunkSize = 16; chunkSize <= maxChunkSize; chunkSize *= 2) {
+            display.setChunkSize(chunkSize);
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                sendFrame(display, i);
+            }
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                sendFrame(display, i);
+            }
+            final double frameTime = (System.nanoTime() - start) / 1000000.0 / frames;
+            System.out.println(String.format("chunk size %4d bytes: %6.2f ms/frame (%5.1f fps)",
+                    chunkSize, frameTime, 1000.0 / frameTime));
+        }
+    }
+
+    private static void sendFrame(OLEDDisplay display, int frame) throws Exception {
+        display.clear();
+        display.drawStringCentered("chunk size " + display.getChunkSize(), Font.FONT_5X8, 20, true);
+        display.drawStringCentered("frame " + frame, Font.FONT_5X8, 35, true);
+        display.invalidate();
+        display.update();
+    }
+
+}
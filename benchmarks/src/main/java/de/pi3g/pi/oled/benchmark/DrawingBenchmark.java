@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled.benchmark;
+
+import de.pi3g.pi.oled.OLEDDisplay;
+import de.pi3g.pi.oled.PackedBitmap;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the pixel based drawing operations for all rotations.
+ *
+ * @author Florian Frankenberger
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawingBenchmark {
+
+    @Param({"DEG_0", "DEG_90", "DEG_180", "DEG_270"})
+    public OLEDDisplay.Rotation rotation;
+
+    private OLEDDisplay display;
+    private BufferedImage image;
+    private PackedBitmap icon;
+    private boolean on;
+
+    @Setup
+    public void setup() throws IOException {
+        display = new OLEDDisplay(new NullTransport(), rotation);
+
+        image = new BufferedImage(display.getWidth(), display.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillOval(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+
+        final BufferedImage iconImage = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D iconGraphics = iconImage.createGraphics();
+        iconGraphics.setColor(Color.WHITE);
+        iconGraphics.fillOval(0, 0, 16, 16);
+        iconGraphics.dispose();
+        icon = new PackedBitmap(iconImage, rotation, true);
+    }
+
+    @Benchmark
+    public void setPixel() {
+        on = !on;
+        for (int x = 0; x < display.getWidth(); x++) {
+            display.setPixel(x, x % display.getHeight(), on);
+        }
+    }
+
+    @Benchmark
+    public void clearRectFullScreen() {
+        on = !on;
+        display.clearRect(0, 0, display.getWidth(), display.getHeight(), on);
+    }
+
+    @Benchmark
+    public void clearRectUnaligned() {
+        on = !on;
+        display.clearRect(3, 5, 37, 21, on);
+    }
+
+    @Benchmark
+    public void drawImage() {
+        display.drawImage(image, 0, 0);
+    }
+
+    @Benchmark
+    public void drawBitmap() {
+        display.drawBitmap(icon, 13, 7);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled.benchmark;
+
+import de.pi3g.pi.oled.DrawCommandQueue;
+import de.pi3g.pi.oled.Font;
+import de.pi3g.pi.oled.OLEDDisplay;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of small updates from many threads: drawing directly on the
+ * synchronized display compared to publishing to a DrawCommandQueue.
+ * Both variants are measured until the change has been sent to the
+ * display, the queue variant waits for it with flush(). Commands
+ * rejected by a full queue are reported as droppedCommands.
+ *
+ * @author Florian Frankenberger
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class FanInBenchmark {
+
+    private OLEDDisplay display;
+    private DrawCommandQueue queue;
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Producer {
+
+        private int row;
+        private int value;
+
+        public long droppedCommands;
+
+        @Setup
+        public void setup(FanInBenchmark benchmark) {
+            row = benchmark.threadIds.getAndIncrement() % 8 * 8;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            droppedCommands = 0;
+        }
+
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        display = new OLEDDisplay(new NullTransport());
+        queue = new DrawCommandQueue(display, 1 << 16);
+        queue.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Benchmark
+    public void synchronizedDisplay(Producer producer) throws IOException {
+        display.fillRect(0, producer.row, 40, 8, false);
+        display.drawString(Integer.toString(producer.value++), Font.FONT_5X8, 0, producer.row, true);
+        display.update();
+    }
+
+    @Benchmark
+    public void commandQueue(Producer producer) throws InterruptedException {
+        if (!queue.fillRect(0, producer.row, 40, 8, false)) {
+            producer.droppedCommands++;
+        }
+        if (!queue.drawNumber(producer.value++, Font.FONT_5X8, 0, producer.row, true)) {
+            producer.droppedCommands++;
+        }
+        queue.flush();
+    }
+
+}
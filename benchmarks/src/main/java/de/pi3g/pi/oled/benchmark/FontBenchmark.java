@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled.benchmark;
+
+import de.pi3g.pi.oled.Canvas;
+import de.pi3g.pi.oled.Font;
+import de.pi3g.pi.oled.OLEDDisplay;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the text rendering for all rotations and fonts.
+ *
+ * @author Florian Frankenberger
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FontBenchmark {
+
+    private static final String TEXT = "Temp: 21.5C\nHum: 45%";
+
+    @Param({"DEG_0", "DEG_90", "DEG_180", "DEG_270"})
+    public OLEDDisplay.Rotation rotation;
+
+    @Param({"FONT_5X8", "FONT_4X5"})
+    public Font font;
+
+    private OLEDDisplay display;
+    private Canvas canvas;
+    private final StringBuilder builder = new StringBuilder();
+    private int counter;
+    private boolean on;
+
+    @Setup
+    public void setup() throws IOException {
+        display = new OLEDDisplay(new NullTransport(), rotation);
+        canvas = display.createCanvas();
+    }
+
+    @Benchmark
+    public void drawChar() {
+        on = !on;
+        display.drawChar('W', font, 10, 10, on);
+    }
+
+    @Benchmark
+    public void drawString() {
+        on = !on;
+        display.drawString(TEXT, font, 1, 3, on);
+    }
+
+    @Benchmark
+    public void drawStringCanvas() {
+        on = !on;
+        canvas.drawString(TEXT, font, 1, 3, on);
+    }
+
+    @Benchmark
+    public void drawStringBuilder() {
+        on = !on;
+        builder.setLength(0);
+        builder.append("Count: ").append(counter++);
+        display.drawString(builder, font, 1, 3, on);
+    }
+
+    @Benchmark
+    public void drawStringCentered() {
+        on = !on;
+        display.drawStringCentered("Hello World!", font, 20, on);
+    }
+
+}
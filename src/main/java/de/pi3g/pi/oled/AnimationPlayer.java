@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays an animation recorded with AnimationWriter. The file is memory
+ * mapped and the stored bytes are copied directly into the image buffer
+ * of the display, so every frame only transmits the regions that changed
+ * (see OLEDDisplay.update()) and hardly needs any CPU.
+ * <p>
+ * The animation owns the display while it is played: anything drawn
+ * between the frames may be kept until the next keyframe.
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * AnimationPlayer player = new AnimationPlayer(display, new File("boot.anim"));
+ * player.play();
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class AnimationPlayer {
+
+    private final OLEDDisplay display;
+    private final MappedByteBuffer animation;
+    private final int frameDuration;
+    private final int[] frameOffsets;
+
+    /**
+     * opens an animation file
+     *
+     * @param display the display to play the animation on
+     * @param file the animation file
+     * @throws IOException if the file can't be read or is no valid animation
+     */
+    public AnimationPlayer(OLEDDisplay display, File file) throws IOException {
+        this.display = display;
+
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final long length = in.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("animation file is too large to be mapped: " + length + " bytes");
+            }
+            this.animation = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            in.close();
+        }
+
+        if (animation.remaining() < 9 || animation.getInt() != AnimationWriter.MAGIC) {
+            throw new IOException("not an animation file: " + file);
+        }
+        final int version = animation.get();
+        if (version != AnimationWriter.VERSION) {
+            throw new IOException("unsupported animation version " + version);
+        }
+        this.frameDuration = animation.getInt();
+        this.frameOffsets = indexFrames();
+    }
+
+    public int getFrameCount() {
+        return frameOffsets.length;
+    }
+
+    /**
+     * @return the time each frame is shown in ms
+     */
+    public int getFrameDuration() {
+        return frameDuration;
+    }
+
+    /**
+     * plays the animation once
+     *
+     * @throws IOException if updating the display failed
+     * @throws InterruptedException
+     */
+    public void play() throws IOException, InterruptedException {
+        play(1);
+    }
+
+    /**
+     * plays the animation
+     *
+     * @param repetitions how often the animation is played
+     * @throws IOException if updating the display failed
+     * @throws InterruptedException
+     */
+    public void play(int repetitions) throws IOException, InterruptedException {
+        final long frameTime = TimeUnit.MILLISECONDS.toNanos(frameDuration);
+        long deadline = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            for (int frame = 0; frame < frameOffsets.length; frame++) {
+                showFrame(frame);
+                display.update();
+
+                deadline += frameTime;
+                final long now = System.nanoTime();
+                if (deadline > now) {
+                    TimeUnit.NANOSECONDS.sleep(deadline - now);
+                } else if (now - deadline > frameTime) {
+                    //deltas can't be skipped, so just continue from here
+                    deadline = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * writes the given frame into the image buffer of the display without
+     * updating it. The frames before it must have been shown already,
+     * unless it is a keyframe.
+     *
+     * @param frame the index of the frame
+     */
+    public synchronized void showFrame(int frame) {
+        animation.position(frameOffsets[frame]);
+        if (animation.get() == AnimationWriter.KEYFRAME) {
+            for (int page = 0; page < OLEDDisplay.DISPLAY_PAGES; page++) {
+                display.writeRegion(animation, page, 0, OLEDDisplay.DISPLAY_WIDTH);
+            }
+        } else {
+            final int spans = animation.getShort() & 0xFFFF;
+            for (int i = 0; i < spans; i++) {
+                final int page = animation.get() & 0xFF;
+                final int column = animation.get() & 0xFF;
+                final int length = animation.get() & 0xFF;
+                display.writeRegion(animation, page, column, length);
+            }
+        }
+    }
+
+    /**
+     * checks the structure of all frames and determines where they start
+     */
+    private int[] indexFrames() throws IOException {
+        int[] offsets = new int[64];
+        int count = 0;
+        try {
+            while (animation.hasRemaining()) {
+                if (count == offsets.length) {
+                    final int[] grown = new int[count * 2];
+                    System.arraycopy(offsets, 0, grown, 0, count);
+                    offsets = grown;
+                }
+                offsets[count] = animation.position();
+
+                final int type = animation.get();
+                if (type == AnimationWriter.KEYFRAME) {
+                    skip(AnimationWriter.FRAME_SIZE);
+                } else if (type == AnimationWriter.DELTA && count > 0) {
+                    final int spans = animation.getShort() & 0xFFFF;
+                    for (int i = 0; i < spans; i++) {
+                        final int page = animation.get() & 0xFF;
+                        final int column = animation.get() & 0xFF;
+                        final int length = animation.get() & 0xFF;
+                        if (page >= OLEDDisplay.DISPLAY_PAGES || length == 0
+                                || column + length > OLEDDisplay.DISPLAY_WIDTH) {
+                            throw new IOException("invalid span in frame " + count);
+                        }
+                        skip(length);
+                    }
+                } else {
+                    throw new IOException("invalid frame type " + type + " of frame " + count);
+                }
+                count++;
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("animation file is truncated");
+        }
+
+        final int[] result = new int[count];
+        System.arraycopy(offsets, 0, result, 0, count);
+        return result;
+    }
+
+    private void skip(int length) throws IOException {
+        if (animation.remaining() < length) {
+            throw new IOException("animation file is truncated");
+        }
+        animation.position(animation.position() + length);
+    }
+
+}
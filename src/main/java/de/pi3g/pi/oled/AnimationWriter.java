@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records an animation into a compact file that can be played back with
+ * AnimationPlayer. Frames are drawn on an OLEDDisplay (e.g. one using a
+ * VirtualDisplayTransport) and added with addFrame(); only the bytes
+ * that changed since the previous frame are stored.
+ * <p>
+ * The format (all numbers big endian):
+ * </p>
+ * <pre>
+ * header:   int magic ("OANI"), byte version (1), int frame duration in ms
+ * frames:   byte type, followed by
+ *   keyframe (type 0): the 1024 bytes of the display memory, page by page
+ *   delta    (type 1): unsigned short span count, followed by that many
+ *                      spans of unsigned byte page, unsigned byte column,
+ *                      unsigned byte length and the length bytes of the page
+ * </pre>
+ * <p>
+ * All image data uses the native layout of the display (one byte per
+ * column and page, least significant bit at the top), so the player
+ * only copies bytes. The first frame and every keyframeInterval-th frame
+ * are stored as keyframes.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public class AnimationWriter {
+
+    static final int MAGIC = 0x4F414E49;
+    static final int VERSION = 1;
+    static final int KEYFRAME = 0;
+    static final int DELTA = 1;
+    static final int FRAME_SIZE = OLEDDisplay.DISPLAY_PAGES * OLEDDisplay.DISPLAY_WIDTH;
+
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    //the size of a span header: unchanged gaps up to this size are
+    //cheaper to include in a span than to start a new one
+    private static final int SPAN_HEADER_SIZE = 3;
+
+    private final DataOutputStream out;
+    private final int keyframeInterval;
+
+    private byte[] previousFrame = new byte[FRAME_SIZE];
+    private byte[] currentFrame = new byte[FRAME_SIZE];
+    private final ByteArrayOutputStream spanBuffer = new ByteArrayOutputStream(FRAME_SIZE);
+    private final DataOutputStream spans = new DataOutputStream(spanBuffer);
+    private int frameCount;
+
+    /**
+     * creates a writer storing a keyframe every 100 frames
+     *
+     * @param out the stream to write the animation to
+     * @param frameDuration the time each frame is shown in ms
+     * @throws IOException
+     */
+    public AnimationWriter(OutputStream out, int frameDuration) throws IOException {
+        this(out, frameDuration, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * creates a writer
+     *
+     * @param out the stream to write the animation to
+     * @param frameDuration the time each frame is shown in ms
+     * @param keyframeInterval the number of frames after which a complete
+     *                         frame is stored again
+     * @throws IOException
+     */
+    public AnimationWriter(OutputStream out, int frameDuration, int keyframeInterval) throws IOException {
+        if (frameDuration <= 0) {
+            throw new IllegalArgumentException("invalid frame duration " + frameDuration);
+        }
+        if (keyframeInterval <= 0) {
+            throw new IllegalArgumentException("invalid keyframe interval " + keyframeInterval);
+        }
+        this.out = new DataOutputStream(out);
+        this.keyframeInterval = keyframeInterval;
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeInt(frameDuration);
+    }
+
+    /**
+     * adds the current content of the display (including changes that
+     * have not been sent with update() yet) as next frame
+     *
+     * @param display the display the frame was drawn on
+     * @throws IOException
+     */
+    public void addFrame(OLEDDisplay display) throws IOException {
+        display.copyImageBuffer(currentFrame);
+
+        if (frameCount % keyframeInterval == 0 || !writeDelta()) {
+            out.writeByte(KEYFRAME);
+            out.write(currentFrame);
+        }
+
+        final byte[] frame = previousFrame;
+        previousFrame = currentFrame;
+        currentFrame = frame;
+        frameCount++;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * writes the changes between the previous and the current frame
+     *
+     * @return false if the delta would be larger than a keyframe and
+     *         nothing has been written
+     */
+    private boolean writeDelta() throws IOException {
+        spanBuffer.reset();
+        int spanCount = 0;
+        for (int page = 0; page < OLEDDisplay.DISPLAY_PAGES; page++) {
+            final int base = page * OLEDDisplay.DISPLAY_WIDTH;
+            int column = 0;
+            while (column < OLEDDisplay.DISPLAY_WIDTH) {
+                if (currentFrame[base + column] == previousFrame[base + column]) {
+                    column++;
+                    continue;
+                }
+
+                //extend the span over small unchanged gaps
+                final int start = column;
+                int end = column;
+                for (int i = column + 1; i < OLEDDisplay.DISPLAY_WIDTH && i - end <= SPAN_HEADER_SIZE; i++) {
+                    if (currentFrame[base + i] != previousFrame[base + i]) {
+                        end = i;
+                    }
+                }
+
+                spans.writeByte(page);
+                spans.writeByte(start);
+                spans.writeByte(end - start + 1);
+                spans.write(currentFrame, base + start, end - start + 1);
+                spanCount++;
+                column = end + 1;
+            }
+        }
+
+        if (spanBuffer.size() >= FRAME_SIZE) {
+            return false;
+        }
+        out.writeByte(DELTA);
+        out.writeShort(spanCount);
+        spanBuffer.writeTo(out);
+        return true;
+    }
+
+    /**
+     * flushes and closes the underlying stream
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,920 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An image in the native page layout of the display that all drawing
+ * operations work on.
+ * <p>
+ * A canvas is not thread safe and does no locking at all, so it should
+ * be owned by a single render thread. The finished frame is handed over
+ * to the display with OLEDDisplay.present(), which is the only point
+ * that needs to synchronize with the display:
+ * </p>
+ * <pre>
+ * Canvas canvas = display.createCanvas();
+ * canvas.drawStringCentered("Hello World!", Font.FONT_5X8, 25, true);
+ * display.present(canvas);
+ * display.update();
+ * </pre>
+ * <p>
+ * The canvas keeps track of the regions that changed since it was
+ * presented the last time, so only those are copied.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public class Canvas {
+
+    private static final int DISPLAY_WIDTH = OLEDDisplay.DISPLAY_WIDTH;
+    private static final int DISPLAY_HEIGHT = OLEDDisplay.DISPLAY_HEIGHT;
+    private static final int DISPLAY_PAGES = OLEDDisplay.DISPLAY_PAGES;
+
+    private final Rotation rotation;
+
+    //the image and its changes, both are only exchanged through
+    //swapBuffer() and takeDirtyRegions()
+    private byte[] imageBuffer = new byte[DISPLAY_WIDTH * DISPLAY_PAGES];
+    private DirtyRegionPlanner dirtyRegions = new DirtyRegionPlanner(DISPLAY_WIDTH, DISPLAY_PAGES, OLEDDisplay.WINDOW_OVERHEAD);
+
+    //reused to convert images without allocating
+    private int[] imageValues;
+
+    //reused to draw char arrays without allocating a String
+    private final CharArraySequence charSequence = new CharArraySequence();
+
+    /**
+     * creates an empty canvas. It is completely marked as changed, so it
+     * replaces the whole image when it is presented the first time.
+     *
+     * @param rotation the rotation of the display(s) the canvas is presented on
+     */
+    public Canvas(Rotation rotation) {
+        this.rotation = rotation;
+        dirtyRegions.markAll();
+    }
+
+    public Rotation getRotation() {
+        return rotation;
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    public int getWidth() {
+        switch (rotation) {
+            case DEG_90:
+            case DEG_270:
+                return DISPLAY_HEIGHT;
+            case DEG_0:
+            case DEG_180:
+            default:
+                return DISPLAY_WIDTH;
+        }
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    public int getHeight() {
+        switch (rotation) {
+            case DEG_90:
+            case DEG_270:
+                return DISPLAY_WIDTH;
+            case DEG_0:
+            case DEG_180:
+            default:
+                return DISPLAY_HEIGHT;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(imageBuffer, (byte) 0x00);
+        dirtyRegions.markAll();
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    public void setPixel(int x, int y, boolean on) {
+        switch (rotation) {
+            default:
+            case DEG_0:
+                updateImageBuffer(x, y, on);
+                break;
+            case DEG_90:
+                updateImageBuffer(y, getWidth() - x - 1, on);
+                break;
+            case DEG_180:
+                updateImageBuffer(getWidth() - x - 1, getHeight() - y - 1, on);
+                break;
+            case DEG_270:
+                updateImageBuffer(getHeight() - y - 1, x, on);
+                break;
+        }
+    }
+
+    private void updateImageBuffer(int x, int y, boolean on) {
+        if (x >= 0 && x < DISPLAY_WIDTH && y >= 0 && y < DISPLAY_HEIGHT) {
+            final int pos = x + (y / 8) * DISPLAY_WIDTH;
+            final byte old = imageBuffer[pos];
+            if (on) {
+                imageBuffer[pos] |= (1 << (y & 0x07));
+            } else {
+                imageBuffer[pos] &= ~(1 << (y & 0x07));
+            }
+            if (imageBuffer[pos] != old) {
+                dirtyRegions.markDirty(y / 8, x);
+            }
+        }
+    }
+
+    /**
+     * ORs (on) or clears (off) the given columns into the image buffer. Each
+     * byte of the data is one column with the topmost pixel in the lowest bit,
+     * just like the display's pages. The columns may start at any row, so
+     * every column touches at most two pages.
+     * <p>
+     * Coordinates are physical display coordinates (they ignore the rotation).
+     * </p>
+     *
+     * @param data the column bytes
+     * @param offset the index of the first column in data
+     * @param columns the number of columns
+     * @param height the number of valid bits per column (1 - 8)
+     * @param x the physical column of the first byte
+     * @param y the physical row of the lowest bit
+     * @param on true to set the pixels, false to clear them
+     */
+    void blitColumns(byte[] data, int offset, int columns, int height, int x, int y, boolean on) {
+        if (y >= DISPLAY_HEIGHT || y + height <= 0) {
+            return;
+        }
+        final int columnMask = (1 << height) - 1;
+        final int page = y >> 3;
+        final int shift = y & 0x07;
+        final int start = Math.max(0, -x);
+        final int end = Math.min(columns, DISPLAY_WIDTH - x);
+        for (int i = start; i < end; i++) {
+            final int bits = (data[offset + i] & columnMask) << shift;
+            blitByte(page, x + i, bits & 0xFF, on);
+            blitByte(page + 1, x + i, bits >> 8, on);
+        }
+    }
+
+    /**
+     * like blitColumns() but with coordinates in the rotated coordinate
+     * system. The columns of the data need to be laid out for the
+     * display's rotation already: for DEG_90 and DEG_270 there are
+     * height columns of width bits each.
+     *
+     * @param data the column bytes
+     * @param offset the index of the first column in data
+     * @param width the width of the area in the rotated coordinate system
+     * @param height the height of the area in the rotated coordinate system
+     * @param x the left edge in the rotated coordinate system
+     * @param y the top edge in the rotated coordinate system
+     * @param on true to set the pixels, false to clear them
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    void blitRotated(byte[] data, int offset, int width, int height, int x, int y, boolean on) {
+        switch (rotation) {
+            default:
+            case DEG_0:
+                blitColumns(data, offset, width, height, x, y, on);
+                break;
+            case DEG_90:
+                blitColumns(data, offset, height, width, y, getWidth() - x - width, on);
+                break;
+            case DEG_180:
+                blitColumns(data, offset, width, height, getWidth() - x - width, getHeight() - y - height, on);
+                break;
+            case DEG_270:
+                blitColumns(data, offset, height, width, getHeight() - y - height, x, on);
+                break;
+        }
+    }
+
+    private void blitByte(int page, int column, int bits, boolean on) {
+        if (bits == 0 || page < 0 || page >= DISPLAY_PAGES) {
+            return;
+        }
+        final int pos = page * DISPLAY_WIDTH + column;
+        final byte old = imageBuffer[pos];
+        final byte value = (byte) (on ? old | bits : old & ~bits);
+        if (value != old) {
+            imageBuffer[pos] = value;
+            dirtyRegions.markDirty(page, column);
+        }
+    }
+
+    public void drawChar(char c, Font font, int x, int y, boolean on) {
+        font.drawChar(this, c, x, y, on);
+    }
+
+    public void drawString(String string, Font font, int x, int y, boolean on) {
+        drawString((CharSequence) string, font, x, y, on);
+    }
+
+    /**
+     * draws the given characters without copying them, so a reused
+     * StringBuilder can be drawn without allocating anything.
+     *
+     * @param string the characters to draw, a '\n' starts a new line
+     * @param font the font to use
+     * @param x the left edge of the text
+     * @param y the top edge of the text
+     * @param on true to set the pixels, false to clear them
+     */
+    public void drawString(CharSequence string, Font font, int x, int y, boolean on) {
+        int posX = x;
+        int posY = y;
+        final int length = string.length();
+        for (int i = 0; i < length; i++) {
+            final char c = string.charAt(i);
+            if (c == '\n') {
+                posY += font.getOuterHeight();
+                posX = x;
+            } else {
+                if (posX >= 0 && posX + font.getWidth() < getWidth()
+                        && posY >= 0 && posY + font.getHeight() < getHeight()) {
+                    font.drawChar(this, c, posX, posY, on);
+                }
+                posX += font.getOuterWidth();
+            }
+        }
+    }
+
+    /**
+     * draws length characters of the given array starting at offset
+     *
+     * @param chars the characters to draw, a '\n' starts a new line
+     * @param offset the index of the first character to draw
+     * @param length the number of characters to draw
+     * @param font the font to use
+     * @param x the left edge of the text
+     * @param y the top edge of the text
+     * @param on true to set the pixels, false to clear them
+     */
+    public void drawString(char[] chars, int offset, int length, Font font, int x, int y, boolean on) {
+        drawString(charSequence.wrap(chars, offset, length), font, x, y, on);
+    }
+
+    public void drawStringCentered(String string, Font font, int y, boolean on) {
+        drawStringCentered((CharSequence) string, font, y, on);
+    }
+
+    public void drawStringCentered(CharSequence string, Font font, int y, boolean on) {
+        final int strSizeX = string.length() * font.getOuterWidth();
+        final int x = (getWidth() - strSizeX) / 2;
+        drawString(string, font, x, y, on);
+    }
+
+    public void drawStringCentered(char[] chars, int offset, int length, Font font, int y, boolean on) {
+        drawStringCentered(charSequence.wrap(chars, offset, length), font, y, on);
+    }
+
+    public void clearRect(int x, int y, int width, int height, boolean on) {
+        fillRect(x, y, width, height, on);
+    }
+
+    /**
+     * sets or clears all pixels of the given rectangle. The rectangle is
+     * filled page by page, so whole bytes are written instead of
+     * single pixels.
+     *
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param on true to set the pixels, false to clear them
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    public void fillRect(int x, int y, int width, int height, boolean on) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        switch (rotation) {
+            default:
+            case DEG_0:
+                fillImageBuffer(x, y, width, height, on);
+                break;
+            case DEG_90:
+                fillImageBuffer(y, getWidth() - x - width, height, width, on);
+                break;
+            case DEG_180:
+                fillImageBuffer(getWidth() - x - width, getHeight() - y - height, width, height, on);
+                break;
+            case DEG_270:
+                fillImageBuffer(getHeight() - y - height, x, height, width, on);
+                break;
+        }
+    }
+
+    private void fillImageBuffer(int x, int y, int width, int height, boolean on) {
+        //clip the rectangle to the display
+        final int startX = Math.max(0, x);
+        final int endX = Math.min(DISPLAY_WIDTH, x + width);
+        final int startY = Math.max(0, y);
+        final int endY = Math.min(DISPLAY_HEIGHT, y + height);
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+
+        final int firstPage = startY / 8;
+        final int lastPage = (endY - 1) / 8;
+        for (int page = firstPage; page <= lastPage; page++) {
+            //the bits of this page's bytes that are inside the rectangle
+            int mask = 0xFF;
+            if (page == firstPage) {
+                mask &= 0xFF << (startY & 0x07);
+            }
+            if (page == lastPage) {
+                mask &= 0xFF >> (7 - ((endY - 1) & 0x07));
+            }
+
+            final int offset = page * DISPLAY_WIDTH;
+            if (mask == 0xFF) {
+                fillPage(offset, startX, endX, on ? (byte) 0xFF : (byte) 0x00);
+            } else {
+                int dirtyStart = -1;
+                int dirtyEnd = -1;
+                for (int column = startX; column < endX; column++) {
+                    final byte old = imageBuffer[offset + column];
+                    final byte value = (byte) (on ? old | mask : old & ~mask);
+                    if (value != old) {
+                        imageBuffer[offset + column] = value;
+                        if (dirtyStart < 0) {
+                            dirtyStart = column;
+                        }
+                        dirtyEnd = column;
+                    }
+                }
+                if (dirtyStart >= 0) {
+                    dirtyRegions.markDirty(page, dirtyStart, dirtyEnd);
+                }
+            }
+        }
+    }
+
+    private void fillPage(int offset, int startX, int endX, byte value) {
+        int first = startX;
+        while (first < endX && imageBuffer[offset + first] == value) {
+            first++;
+        }
+        if (first == endX) {
+            return;
+        }
+        int last = endX - 1;
+        while (imageBuffer[offset + last] == value) {
+            last--;
+        }
+        Arrays.fill(imageBuffer, offset + first, offset + last + 1, value);
+        dirtyRegions.markDirty(offset / DISPLAY_WIDTH, first, last);
+    }
+
+    /**
+     * draws the given image over the current image buffer. The image
+     * is automatically converted to a binary image (if it not already
+     * is): pixels brighter than 50% gray are set, all others are cleared.
+     * <p>
+     * Note that the current buffer is not cleared before, so if you
+     * want the image to completely overwrite the current display
+     * content you need to call clear() before.
+     * </p>
+     * <p>
+     * Byte gray, int RGB/ARGB and binary images are read directly from
+     * their raster data, no temporary images are created.
+     * </p>
+     *
+     * @param image
+     * @param x
+     * @param y
+     */
+    public void drawImage(BufferedImage image, int x, int y) {
+        drawImage(image, x, y, Dithering.THRESHOLD);
+    }
+
+    /**
+     * draws the given image over the current image buffer like
+     * drawImage(BufferedImage, int, int) but converts it to a binary
+     * image using the given dithering method.
+     *
+     * @param image
+     * @param x
+     * @param y
+     * @param dithering the method used to convert the image to black and white
+     */
+    public void drawImage(BufferedImage image, int x, int y, Dithering dithering) {
+        final int startX = Math.max(0, x);
+        final int startY = Math.max(0, y);
+        final int endX = Math.min(getWidth(), x + image.getWidth());
+        final int endY = Math.min(getHeight(), y + image.getHeight());
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+
+        final int width = endX - startX;
+        final int height = endY - startY;
+        if (imageValues == null) {
+            imageValues = new int[DISPLAY_WIDTH * DISPLAY_HEIGHT];
+        }
+        RasterReader.read(image, startX - x, startY - y, width, height, imageValues);
+        dithering.apply(imageValues, width, height, RasterReader.MAX_BRIGHTNESS, startX, startY);
+        writePixels(imageValues, 1, startX, startY, width, height);
+    }
+
+    /**
+     * draws a bitmap that has been converted to the display's page layout
+     * before. The pixels of the bitmap overwrite the image buffer, except
+     * for the transparent pixels of transparent bitmaps.
+     *
+     * @param bitmap the bitmap to draw, it needs to be created for the rotation of this display
+     * @param x the left edge of the bitmap
+     * @param y the top edge of the bitmap
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    public void drawBitmap(PackedBitmap bitmap, int x, int y) {
+        if (bitmap.getRotation() != rotation) {
+            throw new IllegalArgumentException("bitmap was created for rotation " + bitmap.getRotation()
+                    + " but the canvas is rotated by " + rotation);
+        }
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        switch (rotation) {
+            default:
+            case DEG_0:
+                blitBitmap(bitmap, x, y);
+                break;
+            case DEG_90:
+                blitBitmap(bitmap, y, getWidth() - x - width);
+                break;
+            case DEG_180:
+                blitBitmap(bitmap, getWidth() - x - width, getHeight() - y - height);
+                break;
+            case DEG_270:
+                blitBitmap(bitmap, getHeight() - y - height, x);
+                break;
+        }
+    }
+
+    private void blitBitmap(PackedBitmap bitmap, int x, int y) {
+        final byte[] data = bitmap.getData();
+        final byte[] mask = bitmap.getMask();
+        final int pages = bitmap.getPages();
+        final int rows = bitmap.getRows();
+        if (y >= DISPLAY_HEIGHT || y + rows <= 0) {
+            return;
+        }
+
+        final int page = y >> 3;
+        final int shift = y & 0x07;
+        final int start = Math.max(0, -x);
+        final int end = Math.min(bitmap.getColumns(), DISPLAY_WIDTH - x);
+        for (int i = start; i < end; i++) {
+            final int column = x + i;
+            for (int p = 0; p < pages; p++) {
+                final int index = i * pages + p;
+                int bitMask = mask == null ? 0xFF : mask[index] & 0xFF;
+                if (p == pages - 1 && (rows & 0x07) != 0) {
+                    bitMask &= (1 << (rows & 0x07)) - 1;
+                }
+                final int bits = (data[index] & 0xFF) << shift;
+                bitMask <<= shift;
+                writeMasked(page + p, column, bits & 0xFF, bitMask & 0xFF);
+                writeMasked(page + p + 1, column, bits >> 8, bitMask >> 8);
+            }
+        }
+    }
+
+    private void writeMasked(int page, int column, int bits, int mask) {
+        if (mask == 0 || page < 0 || page >= DISPLAY_PAGES) {
+            return;
+        }
+        final int pos = page * DISPLAY_WIDTH + column;
+        final byte old = imageBuffer[pos];
+        final byte value = (byte) ((old & ~mask) | (bits & mask));
+        if (value != old) {
+            imageBuffer[pos] = value;
+            dirtyRegions.markDirty(page, column);
+        }
+    }
+
+    /**
+     * copies the current (not yet sent) image in the native page layout
+     *
+     * @param target receives the DISPLAY_PAGES * DISPLAY_WIDTH bytes of the image
+     */
+    void copyImageBuffer(byte[] target) {
+        System.arraycopy(imageBuffer, 0, target, 0, imageBuffer.length);
+    }
+
+    /**
+     * writes bytes in the native page layout into the image buffer.
+     * Only the columns that actually change are marked for the next update.
+     *
+     * @param source the bytes, read from the current position
+     * @param page the page to write to
+     * @param column the first column to write to
+     * @param length the number of columns to write
+     */
+    void writeRegion(ByteBuffer source, int page, int column, int length) {
+        int dirtyStart = -1;
+        int dirtyEnd = -1;
+        int pos = page * DISPLAY_WIDTH + column;
+        for (int i = column; i < column + length; i++) {
+            final byte value = source.get();
+            if (imageBuffer[pos] != value) {
+                imageBuffer[pos] = value;
+                if (dirtyStart < 0) {
+                    dirtyStart = i;
+                }
+                dirtyEnd = i;
+            }
+            pos++;
+        }
+        if (dirtyStart >= 0) {
+            dirtyRegions.markDirty(page, dirtyStart, dirtyEnd);
+        }
+    }
+
+    /**
+     * draws an 8 bit gray scale frame (e.g. a video frame) using ordered
+     * 8x8 Bayer dithering. The dithering is done with a precomputed lookup
+     * table and 8 pixels at a time are packed directly into a page byte,
+     * which makes this much faster than drawImage() for live video.
+     *
+     * @param frame the gray values of the frame, row by row (0 = black, 255 = white)
+     * @param offset the index of the first pixel in frame
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param x the left edge of the frame on the display
+     * @param y the top edge of the frame on the display
+     */
+    public void drawGrayFrame(byte[] frame, int offset, int width, int height, int x, int y) {
+        final int startX = Math.max(0, x);
+        final int startY = Math.max(0, y);
+        final int endX = Math.min(getWidth(), x + width);
+        final int endY = Math.min(getHeight(), y + height);
+        if (startX >= endX || startY >= endY) {
+            return;
+        }
+        final PhysicalRectangle rectangle = mapRectangle(x, y, width, startX, startY, endX - startX, endY - startY);
+
+        final byte[] lookup = Dithering.BAYER_8X8_LOOKUP;
+        final int endRow = rectangle.y + rectangle.height;
+        for (int page = rectangle.y / 8; page <= (endRow - 1) / 8; page++) {
+            final int rowStart = Math.max(rectangle.y, page * 8);
+            final int rowEnd = Math.min(endRow, page * 8 + 8);
+            final int mask = ((1 << (rowEnd - rowStart)) - 1) << (rowStart & 0x07);
+
+            int dirtyStart = -1;
+            int dirtyEnd = -1;
+            for (int column = rectangle.x; column < rectangle.x + rectangle.width; column++) {
+                final int lookupColumn = (column & 0x07) << 8;
+                int bits = 0;
+                int index = offset + rectangle.base + column * rectangle.columnStep + rowStart * rectangle.rowStep;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    bits |= lookup[((row & 0x07) << 11) | lookupColumn | (frame[index] & 0xFF)];
+                    index += rectangle.rowStep;
+                }
+
+                final int pos = page * DISPLAY_WIDTH + column;
+                final byte old = imageBuffer[pos];
+                final byte value = (byte) ((old & ~mask) | bits);
+                if (value != old) {
+                    imageBuffer[pos] = value;
+                    if (dirtyStart < 0) {
+                        dirtyStart = column;
+                    }
+                    dirtyEnd = column;
+                }
+            }
+            if (dirtyStart >= 0) {
+                dirtyRegions.markDirty(page, dirtyStart, dirtyEnd);
+            }
+        }
+    }
+
+    /**
+     * maps a rectangle of pixels in the rotated coordinate system to the
+     * physical display
+     *
+     * @param originX the left edge of the pixel values
+     * @param originY the top edge of the pixel values
+     * @param stride the number of values per row
+     * @param x the left edge of the rectangle (must be inside the display)
+     * @param y the top edge of the rectangle (must be inside the display)
+     * @param width the width of the rectangle (must fit on the display)
+     * @param height the height of the rectangle (must fit on the display)
+     * @return the physical rectangle and how to get from its pixels to their values
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    private PhysicalRectangle mapRectangle(int originX, int originY, int stride, int x, int y, int width, int height) {
+        switch (rotation) {
+            default:
+            case DEG_0:
+                return new PhysicalRectangle(x, y, width, height,
+                        -originY * stride - originX, 1, stride);
+            case DEG_90:
+                return new PhysicalRectangle(y, getWidth() - x - width, height, width,
+                        -originY * stride + getWidth() - 1 - originX, stride, -1);
+            case DEG_180:
+                return new PhysicalRectangle(getWidth() - x - width, getHeight() - y - height, width, height,
+                        (getHeight() - 1 - originY) * stride + getWidth() - 1 - originX, -1, -stride);
+            case DEG_270:
+                return new PhysicalRectangle(getHeight() - y - height, x, height, width,
+                        (getHeight() - 1 - originY) * stride - originX, -stride, 1);
+        }
+    }
+
+    /**
+     * writes a rectangle of pixels into the image buffer, page by page.
+     *
+     * @param values the pixel values of the rectangle, row by row
+     * @param threshold the value from which on a pixel is set
+     * @param x the left edge of the rectangle (must be inside the display)
+     * @param y the top edge of the rectangle (must be inside the display)
+     * @param width the width of the rectangle (must fit on the display)
+     * @param height the height of the rectangle (must fit on the display)
+     */
+    private void writePixels(int[] values, int threshold, int x, int y, int width, int height) {
+        final PhysicalRectangle rectangle = mapRectangle(x, y, width, x, y, width, height);
+
+        final int endRow = rectangle.y + rectangle.height;
+        for (int page = rectangle.y / 8; page <= (endRow - 1) / 8; page++) {
+            final int rowStart = Math.max(rectangle.y, page * 8);
+            final int rowEnd = Math.min(endRow, page * 8 + 8);
+            final int mask = ((1 << (rowEnd - rowStart)) - 1) << (rowStart & 0x07);
+
+            int dirtyStart = -1;
+            int dirtyEnd = -1;
+            for (int column = rectangle.x; column < rectangle.x + rectangle.width; column++) {
+                int bits = 0;
+                int index = rectangle.base + column * rectangle.columnStep + rowStart * rectangle.rowStep;
+                for (int row = rowStart; row < rowEnd; row++) {
+                    if (values[index] >= threshold) {
+                        bits |= 1 << (row & 0x07);
+                    }
+                    index += rectangle.rowStep;
+                }
+
+                final int pos = page * DISPLAY_WIDTH + column;
+                final byte old = imageBuffer[pos];
+                final byte value = (byte) ((old & ~mask) | bits);
+                if (value != old) {
+                    imageBuffer[pos] = value;
+                    if (dirtyStart < 0) {
+                        dirtyStart = column;
+                    }
+                    dirtyEnd = column;
+                }
+            }
+            if (dirtyStart >= 0) {
+                dirtyRegions.markDirty(page, dirtyStart, dirtyEnd);
+            }
+        }
+    }
+
+    /**
+     * replaces the whole image and marks the canvas as unchanged
+     *
+     * @param image the new image in the native page layout
+     */
+    void loadImage(byte[] image) {
+        System.arraycopy(image, 0, imageBuffer, 0, imageBuffer.length);
+        dirtyRegions.reset();
+    }
+
+    /**
+     * copies the regions that changed since the last call into the target
+     * canvas and marks the bytes that actually differ as changed there
+     *
+     * @param target the canvas to copy to
+     */
+    void copyChangesTo(Canvas target) {
+        for (int page = 0; page < DISPLAY_PAGES; page++) {
+            if (dirtyRegions.isDirty(page)) {
+                target.writePage(page, imageBuffer, dirtyRegions.getDirtyStart(page), dirtyRegions.getDirtyEnd(page));
+            }
+        }
+        dirtyRegions.reset();
+    }
+
+    /**
+     * copies the changed columns of a page into a buffer with the same
+     * layout and marks the page as unchanged
+     *
+     * @param page the page
+     * @param target the buffer to copy to
+     * @param spanStart the first changed column per page, lowered to the
+     *                  first column copied (-1 if none has been copied yet)
+     * @param spanEnd the last changed column per page, raised to the last
+     *                column copied
+     */
+    void takePageChanges(int page, byte[] target, int[] spanStart, int[] spanEnd) {
+        if (!dirtyRegions.isDirty(page)) {
+            return;
+        }
+        final int start = dirtyRegions.getDirtyStart(page);
+        final int end = dirtyRegions.getDirtyEnd(page);
+        final int offset = page * DISPLAY_WIDTH;
+        System.arraycopy(imageBuffer, offset + start, target, offset + start, end - start + 1);
+        if (spanStart[page] < 0) {
+            spanStart[page] = start;
+            spanEnd[page] = end;
+        } else {
+            spanStart[page] = Math.min(spanStart[page], start);
+            spanEnd[page] = Math.max(spanEnd[page], end);
+        }
+        dirtyRegions.reset(page);
+    }
+
+    /**
+     * copies columns of a page from a buffer with the same layout and marks
+     * the bytes that actually change
+     *
+     * @param page the page to write
+     * @param source the buffer to copy from
+     * @param startColumn the first column to copy
+     * @param endColumn the last column to copy
+     */
+    void writePage(int page, byte[] source, int startColumn, int endColumn) {
+        int dirtyStart = -1;
+        int dirtyEnd = -1;
+        final int offset = page * DISPLAY_WIDTH;
+        for (int column = startColumn; column <= endColumn; column++) {
+            final byte value = source[offset + column];
+            if (imageBuffer[offset + column] != value) {
+                imageBuffer[offset + column] = value;
+                if (dirtyStart < 0) {
+                    dirtyStart = column;
+                }
+                dirtyEnd = column;
+            }
+        }
+        if (dirtyStart >= 0) {
+            dirtyRegions.markDirty(page, dirtyStart, dirtyEnd);
+        }
+    }
+
+    /**
+     * marks the whole image as changed
+     */
+    void invalidate() {
+        dirtyRegions.markAll();
+    }
+
+    boolean isDirty() {
+        return dirtyRegions.isDirty();
+    }
+
+    /**
+     * marks the regions that are dirty in the given planner as changed
+     * again, e.g. after they could not be transmitted
+     *
+     * @param regions the regions to mark
+     */
+    void markDirty(DirtyRegionPlanner regions) {
+        for (int page = 0; page < DISPLAY_PAGES; page++) {
+            if (regions.isDirty(page)) {
+                dirtyRegions.markDirty(page, regions.getDirtyStart(page), regions.getDirtyEnd(page));
+            }
+        }
+    }
+
+    /**
+     * replaces the image buffer with the given one and returns the current
+     * one, which is not modified by this canvas anymore. The given buffer has
+     * to be identical to the current one outside of the dirty regions, the
+     * dirty regions are copied into it.
+     *
+     * @param buffer the new image buffer
+     * @return the former image buffer
+     */
+    byte[] swapBuffer(byte[] buffer) {
+        final byte[] former = imageBuffer;
+        for (int page = 0; page < DISPLAY_PAGES; page++) {
+            if (dirtyRegions.isDirty(page)) {
+                final int start = page * DISPLAY_WIDTH + dirtyRegions.getDirtyStart(page);
+                final int end = page * DISPLAY_WIDTH + dirtyRegions.getDirtyEnd(page);
+                System.arraycopy(former, start, buffer, start, end - start + 1);
+            }
+        }
+        imageBuffer = buffer;
+        return former;
+    }
+
+    /**
+     * returns the changes since the last call and continues with the given
+     * planner, which is reset first
+     *
+     * @param replacement the planner that records the following changes
+     * @return the planner with the changes so far
+     */
+    DirtyRegionPlanner takeDirtyRegions(DirtyRegionPlanner replacement) {
+        final DirtyRegionPlanner regions = dirtyRegions;
+        replacement.reset();
+        dirtyRegions = replacement;
+        return regions;
+    }
+
+    /**
+     * a rectangle in physical display coordinates together with the
+     * mapping of its pixels to the index of their values:
+     * index = base + column * columnStep + row * rowStep
+     */
+    private static final class PhysicalRectangle {
+
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final int base;
+        final int columnStep;
+        final int rowStep;
+
+        PhysicalRectangle(int x, int y, int width, int height, int base, int columnStep, int rowStep) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.base = base;
+            this.columnStep = columnStep;
+            this.rowStep = rowStep;
+        }
+
+    }
+
+    /**
+     * a reusable, non copying CharSequence view on a char array
+     */
+    static class CharArraySequence implements CharSequence {
+
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        CharArraySequence wrap(char[] chars, int offset, int length) {
+            if (offset < 0 || length < 0 || offset + length > chars.length) {
+                throw new IndexOutOfBoundsException("offset " + offset + " and length " + length
+                        + " exceed the array of length " + chars.length);
+            }
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " is not within the length " + length);
+            }
+            return chars[offset + index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + " and end " + end
+                        + " are not within the length " + length);
+            }
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the changed column span of every display page and
+ * plans the COLUMNADDR/PAGEADDR windows needed to transmit them.
+ * <p>
+ * Dirty spans of neighbouring pages are merged into one window if
+ * sending the additional (unchanged) bytes of the bounding box is
+ * cheaper than the fixed overhead of addressing another window.
+ * Clean pages between two dirty ones may be included in a window
+ * for the same reason.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+class DirtyRegionPlanner {
+
+    private final int columns;
+    private final int pages;
+    private final int windowOverhead;
+
+    //first and last changed column per page, a start column
+    //of -1 means the page is unchanged
+    private final int[] dirtyStart;
+    private final int[] dirtyEnd;
+
+    //scratch arrays for the planning
+    private final int[] cost;
+    private final int[] groupStart;
+
+    //planned windows, 4 ints each: column start, column end,
+    //page start, page end
+    private final int[] windows;
+    private int windowCount;
+
+    /**
+     * @param columns the number of columns of the display
+     * @param pages the number of pages (8 pixel rows) of the display
+     * @param windowOverhead the cost of addressing one additional window,
+     *                       measured in transmitted data bytes
+     */
+    DirtyRegionPlanner(int columns, int pages, int windowOverhead) {
+        this.columns = columns;
+        this.pages = pages;
+        this.windowOverhead = windowOverhead;
+        this.dirtyStart = new int[pages];
+        this.dirtyEnd = new int[pages];
+        this.cost = new int[pages + 1];
+        this.groupStart = new int[pages + 1];
+        this.windows = new int[pages * 4];
+        reset();
+    }
+
+    void markDirty(int page, int column) {
+        if (dirtyStart[page] < 0) {
+            dirtyStart[page] = column;
+            dirtyEnd[page] = column;
+        } else if (column < dirtyStart[page]) {
+            dirtyStart[page] = column;
+        } else if (column > dirtyEnd[page]) {
+            dirtyEnd[page] = column;
+        }
+    }
+
+    void markDirty(int page, int startColumn, int endColumn) {
+        if (dirtyStart[page] < 0) {
+            dirtyStart[page] = startColumn;
+            dirtyEnd[page] = endColumn;
+        } else {
+            dirtyStart[page] = Math.min(dirtyStart[page], startColumn);
+            dirtyEnd[page] = Math.max(dirtyEnd[page], endColumn);
+        }
+    }
+
+    void markAll() {
+        Arrays.fill(dirtyStart, 0);
+        Arrays.fill(dirtyEnd, columns - 1);
+    }
+
+    void reset() {
+        Arrays.fill(dirtyStart, -1);
+        windowCount = 0;
+    }
+
+    void reset(int page) {
+        dirtyStart[page] = -1;
+    }
+
+    boolean isDirty() {
+        for (int page = 0; page < pages; page++) {
+            if (dirtyStart[page] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isDirty(int page) {
+        return dirtyStart[page] >= 0;
+    }
+
+    int getDirtyStart(int page) {
+        return dirtyStart[page];
+    }
+
+    int getDirtyEnd(int page) {
+        return dirtyEnd[page];
+    }
+
+    /**
+     * plans the windows covering all dirty spans with minimal cost.
+     * The result can be read with the getWindow* methods.
+     *
+     * @return the number of planned windows
+     */
+    int plan() {
+        //cost[i] is the cheapest way to cover all dirty pages < i,
+        //groupStart[i] the first page of the last window of that solution
+        cost[0] = 0;
+        for (int end = 1; end <= pages; end++) {
+            final int last = end - 1;
+            if (dirtyStart[last] < 0) {
+                cost[end] = cost[last];
+                groupStart[end] = -1;
+                continue;
+            }
+
+            cost[end] = Integer.MAX_VALUE;
+            int minColumn = columns;
+            int maxColumn = -1;
+            for (int first = last; first >= 0; first--) {
+                if (dirtyStart[first] < 0) {
+                    continue;
+                }
+                minColumn = Math.min(minColumn, dirtyStart[first]);
+                maxColumn = Math.max(maxColumn, dirtyEnd[first]);
+                final int windowCost = windowOverhead
+                        + (maxColumn - minColumn + 1) * (last - first + 1);
+                if (cost[first] + windowCost < cost[end]) {
+                    cost[end] = cost[first] + windowCost;
+                    groupStart[end] = first;
+                }
+            }
+        }
+
+        //walk back through the solution, this yields the windows
+        //from the bottom to the top of the display
+        windowCount = 0;
+        int end = pages;
+        while (end > 0) {
+            final int first = groupStart[end];
+            if (first < 0) {
+                end--;
+                continue;
+            }
+            int minColumn = columns;
+            int maxColumn = -1;
+            for (int page = first; page < end; page++) {
+                if (dirtyStart[page] >= 0) {
+                    minColumn = Math.min(minColumn, dirtyStart[page]);
+                    maxColumn = Math.max(maxColumn, dirtyEnd[page]);
+                }
+            }
+            final int index = windowCount * 4;
+            windows[index] = minColumn;
+            windows[index + 1] = maxColumn;
+            windows[index + 2] = first;
+            windows[index + 3] = end - 1;
+            windowCount++;
+            end = first;
+        }
+        return windowCount;
+    }
+
+    int getWindowCount() {
+        return windowCount;
+    }
+
+    int getWindowColumnStart(int window) {
+        return windows[window * 4];
+    }
+
+    int getWindowColumnEnd(int window) {
+        return windows[window * 4 + 1];
+    }
+
+    int getWindowPageStart(int window) {
+        return windows[window * 4 + 2];
+    }
+
+    int getWindowPageEnd(int window) {
+        return windows[window * 4 + 3];
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+
+/**
+ * The connection to the display's SSD1306 controller. Implementations
+ * transmit command and data bytes over a specific bus (e.g. i2c or SPI).
+ * <p>
+ * Implementations don't need to be thread safe, OLEDDisplay never
+ * calls a transport from more than one thread at the same time.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public interface DisplayTransport {
+
+    /**
+     * sends the given command bytes to the display
+     *
+     * @param commands the buffer containing the commands
+     * @param offset the offset of the first command byte in the buffer
+     * @param length the number of command bytes to send
+     * @throws IOException
+     */
+    void writeCommands(byte[] commands, int offset, int length) throws IOException;
+
+    /**
+     * sends the given bytes to the display's graphic memory
+     *
+     * @param data the buffer containing the data
+     * @param offset the offset of the first data byte in the buffer
+     * @param length the number of data bytes to send
+     * @throws IOException
+     */
+    void writeData(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * closes the underlying bus
+     *
+     * @throws IOException
+     */
+    void close() throws IOException;
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+/**
+ * The methods available to convert the pixels of an image to the
+ * display's two colors (see OLEDDisplay.drawImage()).
+ * <p>
+ * Ordered dithering (BAYER_*) is fast and produces stable patterns,
+ * which makes it a good fit for animations. Error diffusion
+ * (FLOYD_STEINBERG, ATKINSON) preserves more detail in photos.
+ * Atkinson only diffuses 3/4 of the error, which gives more contrast
+ * on small displays.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public enum Dithering {
+
+    /**
+     * sets all pixels brighter than 50% gray
+     */
+    THRESHOLD {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            final int threshold = (max + 1) / 2;
+            final int length = width * height;
+            for (int i = 0; i < length; i++) {
+                values[i] = values[i] >= threshold ? 1 : 0;
+            }
+        }
+    },
+
+    /**
+     * ordered dithering with a 2x2 Bayer matrix
+     */
+    BAYER_2X2 {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            applyOrdered(values, width, height, max, originX, originY, BAYER_MATRIX_2X2, 1);
+        }
+    },
+
+    /**
+     * ordered dithering with a 4x4 Bayer matrix
+     */
+    BAYER_4X4 {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            applyOrdered(values, width, height, max, originX, originY, BAYER_MATRIX_4X4, 2);
+        }
+    },
+
+    /**
+     * ordered dithering with an 8x8 Bayer matrix
+     */
+    BAYER_8X8 {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            applyOrdered(values, width, height, max, originX, originY, BAYER_MATRIX_8X8, 3);
+        }
+    },
+
+    /**
+     * error diffusion as described by Floyd and Steinberg
+     */
+    FLOYD_STEINBERG {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            final int threshold = (max + 1) / 2;
+            for (int y = 0; y < height; y++) {
+                final int row = y * width;
+                final boolean lastRow = y == height - 1;
+                for (int x = 0; x < width; x++) {
+                    final int index = row + x;
+                    final int value = values[index];
+                    final boolean on = value >= threshold;
+                    final int error = on ? value - max : value;
+                    values[index] = on ? 1 : 0;
+
+                    if (x < width - 1) {
+                        values[index + 1] += error * 7 / 16;
+                    }
+                    if (!lastRow) {
+                        if (x > 0) {
+                            values[index + width - 1] += error * 3 / 16;
+                        }
+                        values[index + width] += error * 5 / 16;
+                        if (x < width - 1) {
+                            values[index + width + 1] += error / 16;
+                        }
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * error diffusion as used by Bill Atkinson on the early Macintosh
+     */
+    ATKINSON {
+        @Override
+        void apply(int[] values, int width, int height, int max, int originX, int originY) {
+            final int threshold = (max + 1) / 2;
+            for (int y = 0; y < height; y++) {
+                final int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    final int index = row + x;
+                    final int value = values[index];
+                    final boolean on = value >= threshold;
+                    final int error = (on ? value - max : value) / 8;
+                    values[index] = on ? 1 : 0;
+
+                    if (x < width - 1) {
+                        values[index + 1] += error;
+                    }
+                    if (x < width - 2) {
+                        values[index + 2] += error;
+                    }
+                    if (y < height - 1) {
+                        if (x > 0) {
+                            values[index + width - 1] += error;
+                        }
+                        values[index + width] += error;
+                        if (x < width - 1) {
+                            values[index + width + 1] += error;
+                        }
+                    }
+                    if (y < height - 2) {
+                        values[index + 2 * width] += error;
+                    }
+                }
+            }
+        }
+    };
+
+    private static final int[] BAYER_MATRIX_2X2 = {
+        0, 2,
+        3, 1
+    };
+
+    private static final int[] BAYER_MATRIX_4X4 = {
+         0,  8,  2, 10,
+        12,  4, 14,  6,
+         3, 11,  1,  9,
+        15,  7, 13,  5
+    };
+
+    private static final int[] BAYER_MATRIX_8X8 = {
+         0, 32,  8, 40,  2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44,  4, 36, 14, 46,  6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+         3, 35, 11, 43,  1, 33,  9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47,  7, 39, 13, 45,  5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    /**
+     * lookup table for ordered 8x8 dithering of 8 bit gray values directly
+     * into page bytes: the entry at (row % 8) * 2048 + (column % 8) * 256 + gray
+     * is the bit of the row within its page if the pixel is set and 0 otherwise.
+     */
+    static final byte[] BAYER_8X8_LOOKUP = createBayerLookup();
+
+    private static byte[] createBayerLookup() {
+        final byte[] table = new byte[8 * 8 * 256];
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                final int threshold = (2 * BAYER_MATRIX_8X8[row * 8 + column] + 1) * 255;
+                for (int gray = 0; gray < 256; gray++) {
+                    if (gray * 128 > threshold) {
+                        table[(row << 11) | (column << 8) | gray] = (byte) (1 << row);
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * converts the given pixel values in place to 1 (set) or 0 (cleared)
+     *
+     * @param values the pixel values, row by row
+     * @param width the number of pixels per row
+     * @param height the number of rows
+     * @param max the value of a white pixel (black is 0)
+     * @param originX the display column of the first value
+     * @param originY the display row of the first value; ordered dithering
+     *                anchors its matrix at the display's origin, so the
+     *                pattern doesn't depend on where the image is drawn
+     */
+    abstract void apply(int[] values, int width, int height, int max, int originX, int originY);
+
+    private static void applyOrdered(int[] values, int width, int height, int max,
+            int originX, int originY, int[] matrix, int bits) {
+        final int size = 1 << bits;
+        final int mask = size - 1;
+        final int scale = 2 * size * size;
+
+        //a pixel is set if it is brighter than (m + 0.5) / size^2 of white
+        for (int y = 0; y < height; y++) {
+            final int row = y * width;
+            final int matrixRow = ((originY + y) & mask) << bits;
+            for (int x = 0; x < width; x++) {
+                final int threshold = (2 * matrix[matrixRow + ((originX + x) & mask)] + 1) * max;
+                values[row + x] = values[row + x] * scale > threshold ? 1 : 0;
+            }
+        }
+    }
+
+}
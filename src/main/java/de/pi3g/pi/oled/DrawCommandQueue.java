@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A lock free queue of draw commands for many threads that each change
+ * small parts of the display (a value here, an icon there).
+ * <p>
+ * The commands are encoded as primitives into a preallocated ring buffer,
+ * so publishing a command neither locks nor allocates. A single render
+ * thread drains the queue in batches, applies the commands to its own
+ * canvas and then presents the canvas and updates the display once per
+ * batch. If the ring buffer is full, commands are rejected instead of
+ * blocking the producer (see getDroppedCommands()).
+ * </p>
+ * <pre>
+ * DrawCommandQueue queue = new DrawCommandQueue(display, 1024);
+ * int icon = queue.registerBitmap(new PackedBitmap(image, display.getRotation(), true));
+ * queue.start();
+ * //from any thread:
+ * queue.fillRect(0, 0, 40, 8, false);
+ * queue.drawNumber(temperature, Font.FONT_5X8, 0, 0, true);
+ * queue.drawBitmap(icon, 100, 0);
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class DrawCommandQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(DrawCommandQueue.class.getCanonicalName());
+
+    private static final Font[] FONTS = Font.values();
+    private static final int MAX_BITMAPS = 256;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    //each command uses 4 longs: the opcode and three arguments
+    private static final int SLOT_SIZE = 4;
+
+    private static final int SET_PIXEL = 1;
+    private static final int FILL_RECT = 2;
+    private static final int DRAW_CHAR = 3;
+    private static final int DRAW_NUMBER = 4;
+    private static final int DRAW_BITMAP = 5;
+
+    private final OLEDDisplay display;
+    private final int mask;
+    private final long[] slots;
+
+    //the sequence number of the command published in each slot
+    private final AtomicLongArray published;
+
+    //the next sequence number to claim by a producer
+    private final AtomicLong head = new AtomicLong();
+
+    //the next sequence number to apply by the render thread,
+    //all slots before it can be reused
+    private volatile long tail;
+
+    //the next sequence number to apply after the last update of the
+    //display, flush() waits for it to pass the head
+    private volatile long flushed;
+    private volatile boolean finished;
+    private final Object flushLock = new Object();
+    private volatile int flushWaiters;
+
+    private final PackedBitmap[] bitmaps = new PackedBitmap[MAX_BITMAPS];
+    private volatile int bitmapCount;
+
+    private final AtomicLong droppedCommands = new AtomicLong();
+
+    private volatile Thread renderer;
+    private volatile boolean running;
+    private volatile boolean sleeping;
+
+    /**
+     * creates a command queue
+     *
+     * @param display the display to draw on
+     * @param capacity the number of commands that can be queued, rounded
+     *                 up to the next power of two
+     */
+    public DrawCommandQueue(OLEDDisplay display, int capacity) {
+        if (capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("invalid capacity " + capacity);
+        }
+        this.display = display;
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.slots = new long[size * SLOT_SIZE];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * registers a bitmap that can be drawn with drawBitmap(). Bitmaps need
+     * to be registered before the queue is started.
+     *
+     * @param bitmap the bitmap, created for the rotation of the display
+     * @return the id of the bitmap
+     */
+    public synchronized int registerBitmap(PackedBitmap bitmap) {
+        if (renderer != null) {
+            throw new IllegalStateException("bitmaps need to be registered before the queue is started");
+        }
+        if (bitmap.getRotation() != display.getRotation()) {
+            throw new IllegalArgumentException("bitmap was created for rotation " + bitmap.getRotation()
+                    + " but the display is rotated by " + display.getRotation());
+        }
+        if (bitmapCount == MAX_BITMAPS) {
+            throw new IllegalStateException("no more than " + MAX_BITMAPS + " bitmaps can be registered");
+        }
+        bitmaps[bitmapCount] = bitmap;
+        return bitmapCount++;
+    }
+
+    /**
+     * starts the render thread
+     */
+    public synchronized void start() {
+        if (renderer != null) {
+            throw new IllegalStateException("the queue has already been started");
+        }
+        running = true;
+        renderer = new Thread("DrawCommandQueue renderer") {
+            @Override
+            public void run() {
+                render();
+            }
+        };
+        renderer.setDaemon(true);
+        renderer.start();
+    }
+
+    /**
+     * stops the render thread after it applied all commands queued so far
+     *
+     * @throws InterruptedException
+     */
+    public void stop() throws InterruptedException {
+        final Thread thread = renderer;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    /**
+     * waits until all commands published so far have been applied and
+     * the display has been updated
+     *
+     * @throws InterruptedException
+     */
+    public void flush() throws InterruptedException {
+        if (renderer == null) {
+            throw new IllegalStateException("the queue has not been started");
+        }
+        final long target = head.get();
+        synchronized (flushLock) {
+            flushWaiters++;
+            try {
+                while (flushed < target) {
+                    if (finished) {
+                        throw new IllegalStateException("the queue was stopped before all commands were applied");
+                    }
+                    flushLock.wait();
+                }
+            } finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    /**
+     * @return the number of commands that were rejected because the queue was full
+     */
+    public long getDroppedCommands() {
+        return droppedCommands.get();
+    }
+
+    public boolean setPixel(int x, int y, boolean on) {
+        return publish(SET_PIXEL | flag(on), pack(x, y), 0, 0);
+    }
+
+    public boolean fillRect(int x, int y, int width, int height, boolean on) {
+        return publish(FILL_RECT | flag(on), pack(x, y), pack(width, height), 0);
+    }
+
+    public boolean drawChar(char c, Font font, int x, int y, boolean on) {
+        return publish(DRAW_CHAR | flag(on) | font.ordinal() << 16, pack(x, y), c, 0);
+    }
+
+    /**
+     * draws a number in decimal notation without allocating a String
+     *
+     * @param value the number
+     * @param font the font to use
+     * @param x the left edge of the text
+     * @param y the top edge of the text
+     * @param on true to set the pixels, false to clear them
+     * @return false if the queue was full
+     */
+    public boolean drawNumber(long value, Font font, int x, int y, boolean on) {
+        return publish(DRAW_NUMBER | flag(on) | font.ordinal() << 16, pack(x, y), value, 0);
+    }
+
+    /**
+     * draws a registered bitmap
+     *
+     * @param bitmap the id returned by registerBitmap()
+     * @param x the left edge of the bitmap
+     * @param y the top edge of the bitmap
+     * @return false if the queue was full
+     */
+    public boolean drawBitmap(int bitmap, int x, int y) {
+        if (bitmap < 0 || bitmap >= bitmapCount) {
+            throw new IllegalArgumentException("unknown bitmap " + bitmap);
+        }
+        return publish(DRAW_BITMAP | bitmap << 16, pack(x, y), 0, 0);
+    }
+
+    private static int flag(boolean on) {
+        return on ? 0x100 : 0;
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private boolean publish(int opcode, long arg0, long arg1, long arg2) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail > mask) {
+                droppedCommands.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        final int slot = (int) sequence & mask;
+        final int index = slot * SLOT_SIZE;
+        slots[index] = opcode;
+        slots[index + 1] = arg0;
+        slots[index + 2] = arg1;
+        slots[index + 3] = arg2;
+        //the volatile write makes the arguments visible to the render thread
+        published.set(slot, sequence);
+
+        if (sleeping) {
+            LockSupport.unpark(renderer);
+        }
+        return true;
+    }
+
+    private void render() {
+        //start with the current content of the display
+        final byte[] image = new byte[OLEDDisplay.DISPLAY_WIDTH * OLEDDisplay.DISPLAY_PAGES];
+        display.copyImageBuffer(image);
+        final Canvas canvas = display.createCanvas();
+        canvas.loadImage(image);
+
+        final char[] digits = new char[20];
+        long next = tail;
+        while (true) {
+            int batch = 0;
+            while (batch < MAX_BATCH_SIZE && published.get((int) next & mask) == next) {
+                apply(canvas, ((int) next & mask) * SLOT_SIZE, digits);
+                next++;
+                batch++;
+            }
+            tail = next;
+
+            if (batch > 0) {
+                display.present(canvas);
+                try {
+                    display.update();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Updating the display failed", ex);
+                }
+                flushed = next;
+                signalFlushWaiters();
+                continue;
+            }
+
+            if (!running) {
+                finished = true;
+                signalFlushWaiters();
+                return;
+            }
+            sleeping = true;
+            if (published.get((int) next & mask) != next && running) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void signalFlushWaiters() {
+        //flush() registers before it checks the progress, so either it
+        //sees the new value or it is counted here
+        if (flushWaiters > 0) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void apply(Canvas canvas, int index, char[] digits) {
+        final int opcode = (int) slots[index];
+        final boolean on = (opcode & 0x100) != 0;
+        final int x = (int) (slots[index + 1] >> 32);
+        final int y = (int) slots[index + 1];
+        switch (opcode & 0xFF) {
+            case SET_PIXEL: {
+                canvas.setPixel(x, y, on);
+                break;
+            }
+            case FILL_RECT: {
+                canvas.fillRect(x, y, (int) (slots[index + 2] >> 32), (int) slots[index + 2], on);
+                break;
+            }
+            case DRAW_CHAR: {
+                canvas.drawChar((char) slots[index + 2], FONTS[opcode >>> 16], x, y, on);
+                break;
+            }
+            case DRAW_NUMBER: {
+                final int start = format(slots[index + 2], digits);
+                canvas.drawString(digits, start, digits.length - start, FONTS[opcode >>> 16], x, y, on);
+                break;
+            }
+            case DRAW_BITMAP: {
+                canvas.drawBitmap(bitmaps[opcode >>> 16], x, y);
+                break;
+            }
+            default:
+                throw new IllegalStateException("unknown draw command " + opcode);
+        }
+    }
+
+    /**
+     * writes the decimal digits of the value right aligned into the array
+     *
+     * @return the index of the first character
+     */
+    private static int format(long value, char[] digits) {
+        int pos = digits.length;
+        long remaining = value;
+        do {
+            digits[--pos] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--pos] = '-';
+        }
+        return pos;
+    }
+
+}
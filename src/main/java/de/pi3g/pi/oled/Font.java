@@ -29,6 +29,9 @@
 
 package de.pi3g.pi.oled;
 
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  *
  * @author Florian Frankenberger
@@ -363,6 +366,10 @@ public enum Font {
     private final int minChar, maxChar, width, height, outerWidth, outerHeight;
     private final byte[] data;
 
+    //the glyph columns laid out in the display's page layout for each
+    //rotation, these are created on first use
+    private final AtomicReferenceArray<byte[]> rotatedData = new AtomicReferenceArray<byte[]>(Rotation.values().length);
+
     private Font(int minChar, int maxChar, int width, int height, int outerWidth, int outerHeight, byte[] data) {
         this.minChar = minChar;
         this.maxChar = maxChar;
@@ -401,23 +408,80 @@ public enum Font {
         return maxChar;
     }
 
-    void drawChar(OLEDDisplay display, char c, int x, int y, boolean on) {
+    void drawChar(Canvas canvas, char c, int x, int y, boolean on) {
         if (c > maxChar || c < minChar) {
             c = '?';
         }
 
         c-= minChar;
 
-        for (int i = 0; i < width; ++i) {
-            int line = data[(c * width) + i];
+        //the columns of the font data are already in the display's page
+        //layout (for DEG_0), so they can be copied directly
+        final Rotation rotation = canvas.getRotation();
+        final int columns = isSwapped(rotation) ? height : width;
+        canvas.blitRotated(getRotatedData(rotation), c * columns, width, height, x, y, on);
+    }
+
+    private static boolean isSwapped(Rotation rotation) {
+        return rotation == Rotation.DEG_90 || rotation == Rotation.DEG_270;
+    }
+
+    private byte[] getRotatedData(Rotation rotation) {
+        if (rotation == Rotation.DEG_0) {
+            return data;
+        }
+        byte[] result = rotatedData.get(rotation.ordinal());
+        if (result == null) {
+            //concurrent callers might both create the data, which is harmless
+            result = rotate(rotation);
+            rotatedData.set(rotation.ordinal(), result);
+        }
+        return result;
+    }
+
+    /**
+     * creates the glyph columns as they are laid out in the display's
+     * pages when the display is rotated. For DEG_90 and DEG_270 each
+     * glyph has height columns of width bits, otherwise width columns
+     * of height bits.
+     */
+    private byte[] rotate(Rotation rotation) {
+        final int glyphs = data.length / width;
+        final int columns = isSwapped(rotation) ? height : width;
+        final byte[] result = new byte[glyphs * columns];
+        for (int glyph = 0; glyph < glyphs; ++glyph) {
+            for (int i = 0; i < width; ++i) {
+                int line = data[(glyph * width) + i];
 
-            for (int j = 0; j < height; ++j) {
-                if ((line & 0x01) > 0) {
-                    display.setPixel(x + i, y + j, on);
+                for (int j = 0; j < height; ++j) {
+                    if ((line & 0x01) > 0) {
+                        final int column;
+                        final int row;
+                        switch (rotation) {
+                            case DEG_90:
+                                column = j;
+                                row = width - i - 1;
+                                break;
+                            case DEG_180:
+                                column = width - i - 1;
+                                row = height - j - 1;
+                                break;
+                            case DEG_270:
+                                column = height - j - 1;
+                                row = i;
+                                break;
+                            default:
+                                column = i;
+                                row = j;
+                                break;
+                        }
+                        result[(glyph * columns) + column] |= 1 << row;
+                    }
+                    line >>= 1;
                 }
-                line >>= 1;
             }
         }
+        return result;
     }
 
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Drives a FrameRenderer at a fixed frame rate: every frame is rendered
+ * on a canvas, presented and sent to the display with update().
+ * <p>
+ * Frames are scheduled on a fixed time grid, so the rate doesn't drift
+ * with varying render or transfer times. If a frame took so long that
+ * the start of the next ones has already passed, these frames are skipped
+ * (the next rendered frame covers them) and counted as dropped. The
+ * average render and flush times help to find out which of both is
+ * too slow.
+ * </p>
+ * <pre>
+ * FrameScheduler scheduler = new FrameScheduler(display, 30, new FrameRenderer() {
+ *     public void renderFrame(Canvas canvas, long frame) {
+ *         canvas.clear();
+ *         canvas.drawStringCentered("frame " + frame, Font.FONT_5X8, 25, true);
+ *     }
+ * });
+ * scheduler.start();
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class FrameScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(FrameScheduler.class.getCanonicalName());
+
+    private final OLEDDisplay display;
+    private final FrameRenderer renderer;
+    private final long frameTime;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    //statistics, only written by the scheduler thread
+    private volatile long renderedFrames;
+    private volatile long droppedFrames;
+    private volatile long renderTime;
+    private volatile long flushTime;
+
+    /**
+     * creates a scheduler
+     *
+     * @param display the display to draw on
+     * @param framesPerSecond the target frame rate
+     * @param renderer draws the frames
+     */
+    public FrameScheduler(OLEDDisplay display, int framesPerSecond, FrameRenderer renderer) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("invalid frame rate " + framesPerSecond);
+        }
+        this.display = display;
+        this.renderer = renderer;
+        this.frameTime = 1000000000L / framesPerSecond;
+    }
+
+    /**
+     * starts rendering frames in a separate thread
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("the scheduler has already been started");
+        }
+        running = true;
+        thread = new Thread("FrameScheduler") {
+            @Override
+            public void run() {
+                runFrames();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * stops rendering frames and waits until the current frame is finished.
+     * The scheduler thread is not interrupted, as it might be transmitting
+     * to the display. The scheduler can be started again afterwards.
+     *
+     * @throws InterruptedException
+     */
+    public void stop() throws InterruptedException {
+        final Thread schedulerThread;
+        synchronized (this) {
+            schedulerThread = thread;
+            if (schedulerThread == null) {
+                return;
+            }
+            running = false;
+            //wake up the scheduler if it is waiting for the next frame
+            notifyAll();
+        }
+        schedulerThread.join();
+        synchronized (this) {
+            if (thread == schedulerThread) {
+                thread = null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of frames that have been rendered and sent
+     */
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    /**
+     * @return the number of frames that were skipped because rendering
+     *         or flushing took longer than a frame
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return the average time needed by the renderer per frame in microseconds
+     */
+    public long getAverageRenderTime() {
+        final long frames = renderedFrames;
+        return frames == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(renderTime / frames);
+    }
+
+    /**
+     * @return the average time needed by present() and update() per frame
+     *         in microseconds
+     */
+    public long getAverageFlushTime() {
+        final long frames = renderedFrames;
+        return frames == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(flushTime / frames);
+    }
+
+    private void runFrames() {
+        final Canvas canvas = display.createCanvas();
+        long frame = 0;
+        long deadline = System.nanoTime();
+        while (running) {
+            final long start = System.nanoTime();
+            long rendered = start;
+            try {
+                renderer.renderFrame(canvas, frame);
+                rendered = System.nanoTime();
+                display.present(canvas);
+                display.update();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Updating the display failed", ex);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Rendering frame " + frame + " failed", ex);
+            }
+            final long flushed = System.nanoTime();
+
+            renderTime += rendered - start;
+            flushTime += flushed - rendered;
+            renderedFrames++;
+
+            frame++;
+            deadline += frameTime;
+            if (flushed - deadline >= frameTime) {
+                //skip all frames whose time has already passed completely,
+                //the current one is rendered right away
+                final long missed = (flushed - deadline) / frameTime;
+                droppedFrames += missed;
+                frame += missed;
+                deadline += missed * frameTime;
+            }
+
+            try {
+                awaitDeadline(deadline);
+            } catch (InterruptedException ex) {
+                LOGGER.log(Level.WARNING, "Scheduler thread interrupted, stopping");
+                return;
+            }
+        }
+    }
+
+    /**
+     * waits until the given time or until the scheduler is stopped
+     */
+    private synchronized void awaitDeadline(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        while (running && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import com.pi4j.io.file.LinuxFile;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A display transport that writes directly to the linux i2c-dev
+ * device file (/dev/i2c-N).
+ * <p>
+ * The slave address is set once when the transport is opened, afterwards
+ * every transmission is a plain write of a pre-framed buffer (control
+ * byte followed by the payload) to the file channel. The same direct
+ * buffer is reused for all transmissions, so no objects are allocated
+ * while sending.
+ * </p>
+ * <p>
+ * For testing the transport can also be created for an arbitrary file
+ * channel (e.g. a regular file or a FIFO), in this case the framed
+ * transmissions are simply written to the channel.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public class I2CDevTransport implements DisplayTransport {
+
+    private static final long I2C_SLAVE = 0x0703;
+
+    private static final byte CONTROL_COMMAND = 0x00;
+    private static final byte CONTROL_DATA = 0x40;
+
+    //control byte + the largest possible chunk
+    private static final int MAX_TRANSMISSION_SIZE = 1 + 1024;
+
+    private final Closeable file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_TRANSMISSION_SIZE);
+
+    /**
+     * opens /dev/i2c-[busNumber] and addresses the display with the given address
+     *
+     * @param busNumber the i2c bus number (use constants from I2CBus)
+     * @param displayAddress the i2c bus address of the display
+     * @throws IOException
+     */
+    public I2CDevTransport(int busNumber, int displayAddress) throws IOException {
+        final LinuxFile linuxFile = new LinuxFile("/dev/i2c-" + busNumber, "rw");
+        try {
+            linuxFile.ioctl(I2C_SLAVE, displayAddress);
+        } catch (IOException ex) {
+            linuxFile.close();
+            throw ex;
+        }
+        this.file = linuxFile;
+        this.channel = linuxFile.getChannel();
+    }
+
+    /**
+     * creates a transport that writes all transmissions to the given channel.
+     * If the channel belongs to an i2c-dev device file the slave address
+     * needs to be set already.
+     *
+     * @param channel the channel to write to
+     */
+    public I2CDevTransport(FileChannel channel) {
+        this.file = channel;
+        this.channel = channel;
+    }
+
+    public void writeCommands(byte[] commands, int offset, int length) throws IOException {
+        write(CONTROL_COMMAND, commands, offset, length);
+    }
+
+    public void writeData(byte[] data, int offset, int length) throws IOException {
+        write(CONTROL_DATA, data, offset, length);
+    }
+
+    private void write(byte control, byte[] data, int offset, int length) throws IOException {
+        final int end = offset + length;
+        for (int i = offset; i < end; i += MAX_TRANSMISSION_SIZE - 1) {
+            final int size = Math.min(MAX_TRANSMISSION_SIZE - 1, end - i);
+            buffer.clear();
+            buffer.put(control);
+            buffer.put(data, i, size);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import com.pi4j.io.i2c.I2CBus;
+import com.pi4j.io.i2c.I2CDevice;
+import com.pi4j.io.i2c.I2CFactory;
+import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
+import java.io.IOException;
+
+/**
+ * A display transport using the i2c bus via pi4j.
+ *
+ * @author Florian Frankenberger
+ */
+public class I2CTransport implements DisplayTransport {
+
+    private static final int CONTROL_COMMAND = 0x00;
+    private static final int CONTROL_DATA = 0x40;
+
+    private final I2CBus bus;
+    private final I2CDevice device;
+
+    /**
+     * opens the given i2c bus and addresses the display with the given address
+     *
+     * @param busNumber the i2c bus number (use constants from I2CBus)
+     * @param displayAddress the i2c bus address of the display
+     * @throws IOException
+     * @throws com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException
+     */
+    public I2CTransport(int busNumber, int displayAddress) throws IOException, UnsupportedBusNumberException {
+        bus = I2CFactory.getInstance(busNumber);
+        device = bus.getDevice(displayAddress);
+    }
+
+    public void writeCommands(byte[] commands, int offset, int length) throws IOException {
+        device.write(CONTROL_COMMAND, commands, offset, length);
+    }
+
+    public void writeData(byte[] data, int offset, int length) throws IOException {
+        device.write(CONTROL_DATA, data, offset, length);
+    }
+
+    public void close() throws IOException {
+        bus.close();
+    }
+
+}
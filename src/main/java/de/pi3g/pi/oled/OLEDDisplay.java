@@ -29,13 +29,11 @@
 package de.pi3g.pi.oled;
 
 import com.pi4j.io.i2c.I2CBus;
-import com.pi4j.io.i2c.I2CDevice;
-import com.pi4j.io.i2c.I2CFactory;
 import com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,6 +52,10 @@ import java.util.logging.Logger;
  * your raspberry: dtparam=i2c1_baudrate=1000000
  * </p>
  * <p>
+ * Other connections than i2c can be used by passing an own
+ * DisplayTransport implementation to the constructor.
+ * </p>
+ * <p>
  * Sample usage:
  * </p>
  * <pre>
@@ -93,9 +95,10 @@ public class OLEDDisplay {
     private static final int DEFAULT_I2C_BUS = I2CBus.BUS_1;
     private static final int DEFAULT_DISPLAY_ADDRESS = 0x3C;
 
-    private static final int DISPLAY_WIDTH = 128;
-    private static final int DISPLAY_HEIGHT = 64;
-    private static final int MAX_INDEX = (DISPLAY_HEIGHT / 8) * DISPLAY_WIDTH;
+    static final int DISPLAY_WIDTH = 128;
+    static final int DISPLAY_HEIGHT = 64;
+    static final int DISPLAY_PAGES = DISPLAY_HEIGHT / 8;
+    private static final int MAX_INDEX = DISPLAY_PAGES * DISPLAY_WIDTH;
 
     private static final byte SSD1306_SETCONTRAST = (byte) 0x81;
     private static final byte SSD1306_DISPLAYALLON_RESUME = (byte) 0xA4;
@@ -131,14 +134,58 @@ public class OLEDDisplay {
 
     private static final byte SSD1306_CHARGEPUMP = (byte) 0x8D;
 
+    private static final int DEFAULT_CHUNK_SIZE = 16;
+    private static final int MIN_CHUNK_SIZE = 16;
+    private static final int COMMAND_BUFFER_SIZE = 32;
+
+    //addressing a window costs one transmission of six command bytes and
+    //starts a new data transmission, each transmission adds the i2c address
+    //and a control byte. The data of a window is always sent as one
+    //contiguous block (see writeWindow()), so this is the whole overhead.
+    static final int WINDOW_OVERHEAD = 6 + 2 * 2;
+
     private static final byte SSD1306_EXTERNALVCC = (byte) 0x1;
     private static final byte SSD1306_SWITCHCAPVCC = (byte) 0x2;
 
-    private final I2CBus bus;
-    private final I2CDevice device;
-    private final Rotation rotation;
+    private final DisplayTransport transport;
+
+    //all drawing operations work on the buffer of this canvas
+    //and its changes since the last update
+    private final Canvas canvas;
+
+    //changes handed over with presentPages(), merged by update()
+    private final StripedPages stripedPages = new StripedPages();
+
+    //the buffer that is currently sent and the changes that need to be
+    //sent; in async flush mode both are owned by the flusher thread
+    //while a flush is pending
+    private byte[] frontBuffer = new byte[MAX_INDEX];
+    private DirtyRegionPlanner flushRegions = new DirtyRegionPlanner(DISPLAY_WIDTH, DISPLAY_PAGES, WINDOW_OVERHEAD);
+    private Thread flusher;
+    private boolean asyncFlush = false;
+    private boolean flushPending = false;
+    private IOException flushError;
+
+    //coalescing: minimum time between two flushes, a frame requested
+    //by update() that is still waiting for the flusher and the start
+    //of the last flush (only valid if hasFlushed is set, as nanoTime()
+    //has an arbitrary origin)
+    private long flushInterval = 0;
+    private boolean updateRequested = false;
+    private boolean hasFlushed = false;
+    private long lastFlush;
 
-    private final byte[] imageBuffer = new byte[(DISPLAY_WIDTH * DISPLAY_HEIGHT) / 8];
+    //guards all accesses to the transport as well as
+    //chunkSize and the command buffer
+    private final Object busLock = new Object();
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private final byte[] commandBuffer = new byte[COMMAND_BUFFER_SIZE];
+    private int commandCount = 0;
+
+    //gathers the columns of windows narrower than the display
+    private final byte[] windowBuffer = new byte[MAX_INDEX];
 
     /**
      * creates an OLED display object with default
@@ -213,11 +260,33 @@ public class OLEDDisplay {
      * @throws com.pi4j.io.i2c.I2CFactory.UnsupportedBusNumberException
      */
     public OLEDDisplay(int busNumber, int displayAddress, Rotation rotation) throws IOException, UnsupportedBusNumberException {
-        bus = I2CFactory.getInstance(busNumber);
-        device = bus.getDevice(displayAddress);
-        this.rotation = rotation;
+        this(new I2CTransport(busNumber, displayAddress), rotation);
 
         LOGGER.log(Level.FINE, "Opened i2c bus");
+    }
+
+    /**
+     * creates an OLED display object that uses the given transport
+     * and the default orientation
+     *
+     * @param transport the connection to the display
+     * @throws IOException
+     */
+    public OLEDDisplay(DisplayTransport transport) throws IOException {
+        this(transport, Rotation.DEG_0);
+    }
+
+    /**
+     * creates an OLED display object that uses the given transport
+     * and a given rotation
+     *
+     * @param transport the connection to the display
+     * @param rotation orientation of the display, can be used if the display is mounted upright or flipped
+     * @throws IOException
+     */
+    public OLEDDisplay(DisplayTransport transport, Rotation rotation) throws IOException {
+        this.transport = transport;
+        this.canvas = new Canvas(rotation);
 
         clear();
 
@@ -235,192 +304,692 @@ public class OLEDDisplay {
     }
 
     public synchronized void clear() {
-        Arrays.fill(imageBuffer, (byte) 0x00);
+        canvas.clear();
     }
 
-    @SuppressWarnings("SuspiciousNameCombination")
-    public int getWidth() {
-        switch (rotation) {
-            case DEG_90:
-            case DEG_270:
-                return DISPLAY_HEIGHT;
-            case DEG_0:
-            case DEG_180:
-            default:
-                return DISPLAY_WIDTH;
+    /**
+     * marks the whole buffer as changed, so the next call to update()
+     * transmits the complete image again.
+     */
+    public synchronized void invalidate() {
+        canvas.invalidate();
+    }
+
+    public int getChunkSize() {
+        synchronized (busLock) {
+            return chunkSize;
         }
     }
 
-    @SuppressWarnings("SuspiciousNameCombination")
-    public int getHeight() {
-        switch (rotation) {
-            case DEG_90:
-            case DEG_270:
-                return DISPLAY_WIDTH;
-            case DEG_0:
-            case DEG_180:
-            default:
-                return DISPLAY_HEIGHT;
+    /**
+     * sets the maximum number of data bytes that are sent in one
+     * i2c transmission by update(). Larger chunks reduce the per
+     * transmission overhead but are not supported by all i2c adapters.
+     * <p>
+     * If the adapter rejects a transmission the transfer is retried with
+     * halved chunks (but not smaller than 16 bytes). The smaller chunk size
+     * is only kept if such a retry succeeds, otherwise the chunk size stays
+     * unchanged and the error is thrown.
+     * </p>
+     *
+     * @param chunkSize the chunk size in bytes (16 - 1024)
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_INDEX) {
+            throw new IllegalArgumentException("chunk size must be between "
+                    + MIN_CHUNK_SIZE + " and " + MAX_INDEX + " but was " + chunkSize);
+        }
+        synchronized (busLock) {
+            this.chunkSize = chunkSize;
         }
     }
 
-    private void writeCommand(byte command) throws IOException {
-        device.write(0x00, command);
+    /**
+     * determines the largest chunk size the i2c adapter accepts by
+     * transmitting the whole buffer with a chunk size of 1024 bytes
+     * and halving it until the transfer succeeds.
+     *
+     * @return the determined chunk size that is used from now on
+     * @throws IOException if even the smallest chunk size fails, the
+     *                     chunk size is not changed in this case
+     */
+    public synchronized int probeChunkSize() throws IOException {
+        final int previousChunkSize = getChunkSize();
+        setChunkSize(MAX_INDEX);
+        canvas.invalidate();
+        try {
+            update();
+            //in async flush mode errors of the transfer end up in flushError
+            awaitFlush();
+            throwFlushError();
+        } catch (IOException ex) {
+            setChunkSize(previousChunkSize);
+            throw ex;
+        }
+        final int result = getChunkSize();
+        LOGGER.log(Level.FINE, "Using a chunk size of {0} bytes", result);
+        return result;
     }
 
-    private void init() throws IOException {
-        writeCommand(SSD1306_DISPLAYOFF);                    // 0xAE
-        writeCommand(SSD1306_SETDISPLAYCLOCKDIV);            // 0xD5
-        writeCommand((byte) 0x80);                           // the suggested ratio 0x80
-        writeCommand(SSD1306_SETMULTIPLEX);                  // 0xA8
-        writeCommand((byte) 0x3F);
-        writeCommand(SSD1306_SETDISPLAYOFFSET);              // 0xD3
-        writeCommand((byte) 0x0);                            // no offset
-        writeCommand((byte) (SSD1306_SETSTARTLINE | 0x0));   // line #0
-        writeCommand(SSD1306_CHARGEPUMP);                    // 0x8D
-        writeCommand((byte) 0x14);
-        writeCommand(SSD1306_MEMORYMODE);                    // 0x20
-        writeCommand((byte) 0x00);                           // 0x0 act like ks0108
-        writeCommand((byte) (SSD1306_SEGREMAP | 0x1));
-        writeCommand(SSD1306_COMSCANDEC);
-        writeCommand(SSD1306_SETCOMPINS);                    // 0xDA
-        writeCommand((byte) 0x12);
-        writeCommand(SSD1306_SETCONTRAST);                   // 0x81
-        writeCommand((byte) 0xCF);
-        writeCommand(SSD1306_SETPRECHARGE);                  // 0xd9
-        writeCommand((byte) 0xF1);
-        writeCommand(SSD1306_SETVCOMDETECT);                 // 0xDB
-        writeCommand((byte) 0x40);
-        writeCommand(SSD1306_DISPLAYALLON_RESUME);           // 0xA4
-        writeCommand(SSD1306_NORMALDISPLAY);
-
-        writeCommand(SSD1306_DISPLAYON);//--turn on oled panel
-    }
-
-    @SuppressWarnings("SuspiciousNameCombination")
-    public synchronized void setPixel(int x, int y, boolean on) {
-        switch (rotation) {
-            default:
-            case DEG_0:
-                updateImageBuffer(x, y, on);
-                break;
-            case DEG_90:
-                updateImageBuffer(y, getWidth() - x - 1, on);
-                break;
-            case DEG_180:
-                updateImageBuffer(getWidth() - x - 1, getHeight() - y - 1, on);
-                break;
-            case DEG_270:
-                updateImageBuffer(getHeight() - y - 1, x, on);
-                break;
+    /**
+     * sets the contrast of the display
+     *
+     * @param contrast the contrast (0 - 255)
+     * @throws IOException
+     */
+    public void setContrast(int contrast) throws IOException {
+        if (contrast < 0 || contrast > 255) {
+            throw new IllegalArgumentException("contrast must be between 0 and 255 but was " + contrast);
+        }
+        synchronized (busLock) {
+            queueCommand(SSD1306_SETCONTRAST);
+            queueCommand((byte) contrast);
+            flushCommands();
         }
     }
 
-    private synchronized void updateImageBuffer(int x, int y, boolean on) {
-        final int pos = x + (y / 8) * DISPLAY_WIDTH;
-        if (pos >= 0 && pos < MAX_INDEX) {
-            if (on) {
-                this.imageBuffer[pos] |= (1 << (y & 0x07));
-            } else {
-                this.imageBuffer[pos] &= ~(1 << (y & 0x07));
-            }
+    /**
+     * inverts the display, so all pixels that are set are dark and
+     * all other pixels are lit. This does not change the image buffer.
+     *
+     * @param inverted true to invert the display
+     * @throws IOException
+     */
+    public void setInverted(boolean inverted) throws IOException {
+        synchronized (busLock) {
+            queueCommand(inverted ? SSD1306_INVERTDISPLAY : SSD1306_NORMALDISPLAY);
+            flushCommands();
         }
     }
 
-    public synchronized void drawChar(char c, Font font, int x, int y, boolean on) {
-        font.drawChar(this, c, x, y, on);
+    public synchronized boolean isAsyncFlush() {
+        return asyncFlush;
     }
 
-    public synchronized void drawString(String string, Font font, int x, int y, boolean on) {
-        int posX = x;
-        int posY = y;
-        for (char c : string.toCharArray()) {
-            if (c == '\n') {
-                posY += font.getOuterHeight();
-                posX = x;
-            } else {
-                if (posX >= 0 && posX + font.getWidth() < this.getWidth()
-                        && posY >= 0 && posY + font.getHeight() < this.getHeight()) {
-                    drawChar(c, font, posX, posY, on);
+    /**
+     * enables or disables the asynchronous flush mode.
+     * <p>
+     * In asynchronous mode the display is double buffered: update() only
+     * hands the current buffer over to a separate flusher thread and
+     * returns immediately, so the next frame can be drawn while the previous
+     * one is still being transmitted. update() only blocks if the previous
+     * frame has not been completely sent yet. Errors of the flusher thread
+     * are thrown by the next call to update().
+     * </p>
+     * <p>
+     * Disabling the asynchronous mode waits until the pending frame has
+     * been sent.
+     * </p>
+     *
+     * @param asyncFlush true to enable asynchronous flushing
+     */
+    public synchronized void setAsyncFlush(boolean asyncFlush) {
+        if (asyncFlush == this.asyncFlush) {
+            return;
+        }
+        if (asyncFlush) {
+            this.asyncFlush = true;
+            flusher = new Thread("OLEDDisplay flusher") {
+                @Override
+                public void run() {
+                    flushLoop();
                 }
-                posX += font.getOuterWidth();
+            };
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            //the old flusher sends the pending frames, afterwards it ends
+            //without taking any further frames, even if the async mode is
+            //enabled again in the meantime
+            this.asyncFlush = false;
+            awaitFlush();
+            flusher = null;
+            notifyAll();
+        }
+    }
+
+    public synchronized int getFlushInterval() {
+        return (int) TimeUnit.NANOSECONDS.toMillis(flushInterval);
+    }
+
+    /**
+     * sets the minimum time between two transmissions in asynchronous
+     * mode (see setAsyncFlush()), which coalesces updates.
+     * <p>
+     * With an interval greater than 0 update() never blocks: it only
+     * marks the current frame as pending. The flusher thread sends it
+     * immediately if the display has been idle for the interval, otherwise
+     * as soon as the interval has passed. Further calls to update() in the
+     * meantime are merged into that single transmission, so several
+     * components can call update() after their own changes without
+     * causing redundant transfers.
+     * </p>
+     *
+     * @param milliseconds the minimum interval, 0 to send every update
+     */
+    public synchronized void setFlushInterval(int milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException("flush interval must not be negative but was " + milliseconds);
+        }
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        notifyAll();
+    }
+
+    private synchronized void awaitFlush() {
+        boolean interrupted = false;
+        while (flushPending || updateRequested) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    public synchronized void drawStringCentered(String string, Font font, int y, boolean on) {
-        final int strSizeX = string.length() * font.getOuterWidth();
-        final int x = (this.getWidth() - strSizeX) / 2;
-        drawString(string, font, x, y, on);
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                while (flusher == Thread.currentThread() && !flushPending) {
+                    try {
+                        if (!updateRequested) {
+                            wait();
+                            continue;
+                        }
+                        final long delay = hasFlushed ? lastFlush + flushInterval - System.nanoTime() : 0;
+                        if (delay > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(this, delay);
+                            continue;
+                        }
+                        //all updates requested in the meantime end up in this frame
+                        updateRequested = false;
+                        if (canvas.isDirty()) {
+                            handOver();
+                        } else {
+                            //nothing to send, wake up awaitFlush()
+                            notifyAll();
+                        }
+                    } catch (InterruptedException ex) {
+                        LOGGER.log(Level.FINE, "Flusher thread interrupted");
+                    }
+                }
+                if (flusher != Thread.currentThread()) {
+                    //retired by setAsyncFlush(false), which has waited for
+                    //the pending frame, so a pending flush belongs to a
+                    //newer flusher
+                    return;
+                }
+                lastFlush = System.nanoTime();
+                hasFlushed = true;
+            }
+
+            //the front buffer and the flush regions are owned by this
+            //thread as long as a flush is pending
+            IOException error = null;
+            try {
+                sendRegions(frontBuffer, flushRegions);
+            } catch (IOException ex) {
+                error = ex;
+            }
+
+            synchronized (this) {
+                if (error != null) {
+                    //resend the failed regions with the next update
+                    canvas.markDirty(flushRegions);
+                    flushError = error;
+                }
+                flushRegions.reset();
+                flushPending = false;
+                notifyAll();
+            }
+        }
     }
 
-    public synchronized void clearRect(int x, int y, int width, int height, boolean on) {
-        for (int posX = x; posX < x + width; ++posX) {
-            for (int posY = y; posY < y + height; ++posY) {
-                setPixel(posX, posY, on);
+    public Rotation getRotation() {
+        return canvas.getRotation();
+    }
+
+    public int getWidth() {
+        return canvas.getWidth();
+    }
+
+    public int getHeight() {
+        return canvas.getHeight();
+    }
+
+    /**
+     * creates a canvas with the rotation of this display, to draw frames
+     * without any locking (see present())
+     *
+     * @return a new, empty canvas
+     */
+    public Canvas createCanvas() {
+        return new Canvas(canvas.getRotation());
+    }
+
+    /**
+     * adds a command byte to the command buffer. The buffered commands
+     * are sent in a single i2c transmission by flushCommands().
+     */
+    private void queueCommand(byte command) throws IOException {
+        if (commandCount == commandBuffer.length) {
+            flushCommands();
+        }
+        commandBuffer[commandCount++] = command;
+    }
+
+    private void flushCommands() throws IOException {
+        if (commandCount > 0) {
+            try {
+                transport.writeCommands(commandBuffer, 0, commandCount);
+            } finally {
+                commandCount = 0;
             }
         }
     }
 
+    private void init() throws IOException {
+        queueCommand(SSD1306_DISPLAYOFF);                    // 0xAE
+        queueCommand(SSD1306_SETDISPLAYCLOCKDIV);            // 0xD5
+        queueCommand((byte) 0x80);                           // the suggested ratio 0x80
+        queueCommand(SSD1306_SETMULTIPLEX);                  // 0xA8
+        queueCommand((byte) 0x3F);
+        queueCommand(SSD1306_SETDISPLAYOFFSET);              // 0xD3
+        queueCommand((byte) 0x0);                            // no offset
+        queueCommand((byte) (SSD1306_SETSTARTLINE | 0x0));   // line #0
+        queueCommand(SSD1306_CHARGEPUMP);                    // 0x8D
+        queueCommand((byte) 0x14);
+        queueCommand(SSD1306_MEMORYMODE);                    // 0x20
+        queueCommand((byte) 0x00);                           // 0x0 act like ks0108
+        queueCommand((byte) (SSD1306_SEGREMAP | 0x1));
+        queueCommand(SSD1306_COMSCANDEC);
+        queueCommand(SSD1306_SETCOMPINS);                    // 0xDA
+        queueCommand((byte) 0x12);
+        queueCommand(SSD1306_SETCONTRAST);                   // 0x81
+        queueCommand((byte) 0xCF);
+        queueCommand(SSD1306_SETPRECHARGE);                  // 0xd9
+        queueCommand((byte) 0xF1);
+        queueCommand(SSD1306_SETVCOMDETECT);                 // 0xDB
+        queueCommand((byte) 0x40);
+        queueCommand(SSD1306_DISPLAYALLON_RESUME);           // 0xA4
+        queueCommand(SSD1306_NORMALDISPLAY);
+
+        queueCommand(SSD1306_DISPLAYON);//--turn on oled panel
+        flushCommands();
+    }
+
+    public synchronized void setPixel(int x, int y, boolean on) {
+        canvas.setPixel(x, y, on);
+    }
+
+    public synchronized void drawChar(char c, Font font, int x, int y, boolean on) {
+        canvas.drawChar(c, font, x, y, on);
+    }
+
+    public synchronized void drawString(String string, Font font, int x, int y, boolean on) {
+        canvas.drawString(string, font, x, y, on);
+    }
+
+    /**
+     * draws the given characters without copying them, so a reused
+     * StringBuilder can be drawn without allocating anything.
+     *
+     * @param string the characters to draw, a '\n' starts a new line
+     * @param font the font to use
+     * @param x the left edge of the text
+     * @param y the top edge of the text
+     * @param on true to set the pixels, false to clear them
+     */
+    public synchronized void drawString(CharSequence string, Font font, int x, int y, boolean on) {
+        canvas.drawString(string, font, x, y, on);
+    }
+
+    /**
+     * draws length characters of the given array starting at offset
+     *
+     * @param chars the characters to draw, a '\n' starts a new line
+     * @param offset the index of the first character to draw
+     * @param length the number of characters to draw
+     * @param font the font to use
+     * @param x the left edge of the text
+     * @param y the top edge of the text
+     * @param on true to set the pixels, false to clear them
+     */
+    public synchronized void drawString(char[] chars, int offset, int length, Font font, int x, int y, boolean on) {
+        canvas.drawString(chars, offset, length, font, x, y, on);
+    }
+
+    public synchronized void drawStringCentered(String string, Font font, int y, boolean on) {
+        canvas.drawStringCentered(string, font, y, on);
+    }
+
+    public synchronized void drawStringCentered(CharSequence string, Font font, int y, boolean on) {
+        canvas.drawStringCentered(string, font, y, on);
+    }
+
+    public synchronized void drawStringCentered(char[] chars, int offset, int length, Font font, int y, boolean on) {
+        canvas.drawStringCentered(chars, offset, length, font, y, on);
+    }
+
+    public synchronized void clearRect(int x, int y, int width, int height, boolean on) {
+        canvas.clearRect(x, y, width, height, on);
+    }
+
+    /**
+     * sets or clears all pixels of the given rectangle. The rectangle is
+     * filled page by page, so whole bytes are written instead of
+     * single pixels.
+     *
+     * @param x the left edge of the rectangle
+     * @param y the top edge of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @param on true to set the pixels, false to clear them
+     */
+    public synchronized void fillRect(int x, int y, int width, int height, boolean on) {
+        canvas.fillRect(x, y, width, height, on);
+    }
+
     /**
      * draws the given image over the current image buffer. The image
      * is automatically converted to a binary image (if it not already
-     * is).
+     * is): pixels brighter than 50% gray are set, all others are cleared.
      * <p>
      * Note that the current buffer is not cleared before, so if you
      * want the image to completely overwrite the current display
      * content you need to call clear() before.
      * </p>
+     * <p>
+     * Byte gray, int RGB/ARGB and binary images are read directly from
+     * their raster data, no temporary images are created.
+     * </p>
      *
      * @param image
      * @param x
      * @param y
      */
     public synchronized void drawImage(BufferedImage image, int x, int y) {
-        BufferedImage tmpImage = new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
-        tmpImage.getGraphics().drawImage(image, x, y, null);
-
-        int index = 0;
-        int pixelval;
-        final byte[] pixels = ((DataBufferByte) tmpImage.getRaster().getDataBuffer()).getData();
-        for (int posY = 0; posY < DISPLAY_HEIGHT; posY++) {
-            for (int posX = 0; posX < DISPLAY_WIDTH / 8; posX++) {
-                for (int bit = 0; bit < 8; bit++) {
-                    pixelval = (byte) ((pixels[index/8] >>  (7 - bit)) & 0x01);
-                    setPixel(posX * 8 + bit, posY, pixelval > 0);
-                    index++;
-                }
-            }
+        canvas.drawImage(image, x, y);
+    }
+
+    /**
+     * draws the given image over the current image buffer like
+     * drawImage(BufferedImage, int, int) but converts it to a binary
+     * image using the given dithering method.
+     *
+     * @param image
+     * @param x
+     * @param y
+     * @param dithering the method used to convert the image to black and white
+     */
+    public synchronized void drawImage(BufferedImage image, int x, int y, Dithering dithering) {
+        canvas.drawImage(image, x, y, dithering);
+    }
+
+    /**
+     * draws a bitmap that has been converted to the display's page layout
+     * before. The pixels of the bitmap overwrite the image buffer, except
+     * for the transparent pixels of transparent bitmaps.
+     *
+     * @param bitmap the bitmap to draw, it needs to be created for the rotation of this display
+     * @param x the left edge of the bitmap
+     * @param y the top edge of the bitmap
+     */
+    public synchronized void drawBitmap(PackedBitmap bitmap, int x, int y) {
+        canvas.drawBitmap(bitmap, x, y);
+    }
+
+    /**
+     * copies the current (not yet sent) image in the native page layout
+     *
+     * @param target receives the DISPLAY_PAGES * DISPLAY_WIDTH bytes of the image
+     */
+    synchronized void copyImageBuffer(byte[] target) {
+        canvas.copyImageBuffer(target);
+    }
+
+    /**
+     * writes bytes in the native page layout into the image buffer.
+     * Only the columns that actually change are marked for the next update.
+     *
+     * @param source the bytes, read from the current position
+     * @param page the page to write to
+     * @param column the first column to write to
+     * @param length the number of columns to write
+     */
+    synchronized void writeRegion(ByteBuffer source, int page, int column, int length) {
+        canvas.writeRegion(source, page, column, length);
+    }
+
+    /**
+     * draws an 8 bit gray scale frame (e.g. a video frame) using ordered
+     * 8x8 Bayer dithering. The dithering is done with a precomputed lookup
+     * table and 8 pixels at a time are packed directly into a page byte,
+     * which makes this much faster than drawImage() for live video.
+     *
+     * @param frame the gray values of the frame, row by row (0 = black, 255 = white)
+     * @param offset the index of the first pixel in frame
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param x the left edge of the frame on the display
+     * @param y the top edge of the frame on the display
+     */
+    public synchronized void drawGrayFrame(byte[] frame, int offset, int width, int height, int x, int y) {
+        canvas.drawGrayFrame(frame, offset, width, height, x, y);
+    }
+
+    /**
+     * hands a finished frame over to the display: all regions of the canvas
+     * that changed since it was presented the last time are copied into
+     * the image buffer. Call update() afterwards to send them.
+     * <p>
+     * This allows a render thread to draw on its own canvas without
+     * acquiring the display's lock for every drawing operation.
+     * </p>
+     *
+     * @param source the canvas to copy, it needs to have the rotation of this display
+     */
+    public synchronized void present(Canvas source) {
+        if (source.getRotation() != canvas.getRotation()) {
+            throw new IllegalArgumentException("canvas was created for rotation " + source.getRotation()
+                    + " but the display is rotated by " + canvas.getRotation());
         }
+        source.copyChangesTo(canvas);
     }
 
     /**
-     * sends the current buffer to the display
+     * hands the changes of some pages of a canvas over to the display like
+     * present(), but without acquiring the display's monitor: every page
+     * has its own lock instead. This way several threads that each draw
+     * a different part of the screen on their own canvas can hand over
+     * their changes in parallel, even while update() is transmitting
+     * another frame. The changes are merged by the next call to update(),
+     * which only holds the lock of each page while merging it.
+     * <p>
+     * Pages are rows of 8 pixels of the unrotated display: for DEG_0 and
+     * DEG_180 they are horizontal stripes of the screen, for DEG_90 and
+     * DEG_270 vertical ones. Changes outside of the given pages stay in
+     * the canvas.
+     * </p>
+     *
+     * @param source the canvas, it needs to have the rotation of this display
+     * @param firstPage the first page to hand over (0 - 7)
+     * @param lastPage the last page to hand over (0 - 7)
+     */
+    public void presentPages(Canvas source, int firstPage, int lastPage) {
+        if (source.getRotation() != canvas.getRotation()) {
+            throw new IllegalArgumentException("canvas was created for rotation " + source.getRotation()
+                    + " but the display is rotated by " + canvas.getRotation());
+        }
+        if (firstPage < 0 || lastPage >= DISPLAY_PAGES || firstPage > lastPage) {
+            throw new IllegalArgumentException("invalid page range " + firstPage + " - " + lastPage);
+        }
+        for (int page = firstPage; page <= lastPage; page++) {
+            stripedPages.stage(source, page);
+        }
+    }
+
+    /**
+     * sends the changed parts of the current buffer to the display.
+     * <p>
+     * Only the regions that were modified since the last update are
+     * transmitted (see DirtyRegionPlanner), so calling this method
+     * without any changes in between causes no i2c traffic at all.
+     * </p>
      * @throws IOException
      */
     public synchronized void update() throws IOException {
-        writeCommand(SSD1306_COLUMNADDR);
-        writeCommand((byte) 0);   // Column start address (0 = reset)
-        writeCommand((byte) (DISPLAY_WIDTH - 1)); // Column end address (127 = reset)
+        throwFlushError();
+        stripedPages.mergeInto(canvas);
+
+        if (!asyncFlush) {
+            //a flusher that is just ending may still send an older frame
+            awaitFlush();
+            if (!canvas.isDirty()) {
+                return;
+            }
+            swapBuffers();
+            try {
+                sendRegions(frontBuffer, flushRegions);
+            } catch (IOException ex) {
+                //resend the failed regions with the next update
+                canvas.markDirty(flushRegions);
+                throw ex;
+            } finally {
+                flushRegions.reset();
+            }
+            return;
+        }
+
+        if (flushInterval > 0) {
+            if (canvas.isDirty() && !updateRequested) {
+                updateRequested = true;
+                notifyAll();
+            }
+            return;
+        }
+
+        awaitFlush();
+        if (canvas.isDirty()) {
+            handOver();
+        }
+    }
+
+    /**
+     * hands the image buffer over to the flusher thread. The caller needs
+     * to hold the display's monitor and no flush may be pending.
+     */
+    private void handOver() {
+        swapBuffers();
+        flushPending = true;
+        notifyAll();
+    }
 
-        writeCommand(SSD1306_PAGEADDR);
-        writeCommand((byte) 0); // Page start address (0 = reset)
-        writeCommand((byte) 7); // Page end address
+    /**
+     * takes the canvas' image buffer and changes as the front buffer and
+     * flush regions, so the canvas can be drawn on while they are sent.
+     * The caller needs to hold the display's monitor and no flush may be
+     * pending.
+     */
+    private void swapBuffers() {
+        frontBuffer = canvas.swapBuffer(frontBuffer);
+        flushRegions = canvas.takeDirtyRegions(flushRegions);
+    }
 
-        for (int i = 0; i < ((DISPLAY_WIDTH * DISPLAY_HEIGHT / 8) / 16); i++) {
+    private void sendRegions(byte[] buffer, DirtyRegionPlanner regions) throws IOException {
+        synchronized (busLock) {
+            final int windows = regions.plan();
+            for (int window = 0; window < windows; window++) {
+                sendWindow(buffer, regions.getWindowColumnStart(window), regions.getWindowColumnEnd(window),
+                        regions.getWindowPageStart(window), regions.getWindowPageEnd(window));
+            }
+        }
+    }
+
+    /**
+     * throws the error of the last asynchronous flush, if there was one
+     */
+    private void throwFlushError() throws IOException {
+        if (flushError != null) {
+            final IOException error = flushError;
+            flushError = null;
+            throw error;
+        }
+    }
+
+    private void sendWindow(byte[] buffer, int columnStart, int columnEnd, int pageStart, int pageEnd) throws IOException {
+        final int originalChunkSize = chunkSize;
+        IOException error = null;
+        while (true) {
+            try {
+                writeWindow(buffer, columnStart, columnEnd, pageStart, pageEnd);
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Transmission with a chunk size of " + originalChunkSize
+                            + " bytes failed, reduced the chunk size to " + chunkSize + " bytes", error);
+                }
+                return;
+            } catch (IOException ex) {
+                if (error == null) {
+                    error = ex;
+                }
+                if (chunkSize <= MIN_CHUNK_SIZE) {
+                    //smaller chunks don't help, so the error is not caused
+                    //by the chunk size
+                    chunkSize = originalChunkSize;
+                    throw error;
+                }
+                //the adapter might not support transmissions of this size,
+                //so we retry the whole window with smaller chunks
+                chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+            }
+        }
+    }
+
+    private void writeWindow(byte[] buffer, int columnStart, int columnEnd, int pageStart, int pageEnd) throws IOException {
+        queueCommand(SSD1306_COLUMNADDR);
+        queueCommand((byte) columnStart);   // Column start address
+        queueCommand((byte) columnEnd);     // Column end address
+
+        queueCommand(SSD1306_PAGEADDR);
+        queueCommand((byte) pageStart);     // Page start address
+        queueCommand((byte) pageEnd);       // Page end address
+        flushCommands();
+
+        if (columnStart == 0 && columnEnd == DISPLAY_WIDTH - 1) {
+            //full width windows are contiguous in the buffer
+            writeData(buffer, pageStart * DISPLAY_WIDTH, (pageEnd + 1) * DISPLAY_WIDTH);
+        } else {
+            //the display wraps to the next page at the end of the window,
+            //so the columns of all pages can be sent in one block
+            final int width = columnEnd - columnStart + 1;
+            int length = 0;
+            for (int page = pageStart; page <= pageEnd; page++) {
+                System.arraycopy(buffer, page * DISPLAY_WIDTH + columnStart, windowBuffer, length, width);
+                length += width;
+            }
+            writeData(windowBuffer, 0, length);
+        }
+    }
+
+    private void writeData(byte[] buffer, int start, int end) throws IOException {
+        for (int i = start; i < end; i += chunkSize) {
             // send a bunch of data in one xmission
-            device.write((byte) 0x40, imageBuffer, i * 16, 16);
+            transport.writeData(buffer, i, Math.min(chunkSize, end - i));
         }
     }
 
     private synchronized void shutdown() {
         try {
+            setAsyncFlush(false);
+
             //before we shut down we clear the display
             clear();
             update();
 
             //now we close the bus
-            bus.close();
+            transport.close();
         } catch (IOException ex) {
             LOGGER.log(Level.FINE, "Closing i2c bus");
         }
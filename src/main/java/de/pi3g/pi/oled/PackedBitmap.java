@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+
+/**
+ * An image that has been converted once into the display's native
+ * page layout, so it can be drawn repeatedly (e.g. icons or logos that
+ * are drawn every frame) with OLEDDisplay.drawBitmap() at the speed of
+ * copying bytes.
+ * <p>
+ * As the layout depends on the orientation of the display, a bitmap
+ * is created for a specific rotation and can only be drawn on displays
+ * with that rotation.
+ * </p>
+ * <p>
+ * Bitmaps can optionally be transparent: pixels of the source image with
+ * an alpha value below 50% are not drawn, so the display content below
+ * them is kept.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+public class PackedBitmap {
+
+    private final int width;
+    private final int height;
+    private final Rotation rotation;
+
+    //the physical columns, each consisting of pages bytes
+    private final int columns;
+    private final int pages;
+    private final byte[] data;
+
+    //same layout as data, a set bit marks a pixel that is drawn.
+    //null for opaque bitmaps
+    private final byte[] mask;
+
+    /**
+     * converts the given image into an opaque bitmap
+     *
+     * @param image the image to convert
+     * @param rotation the rotation of the display(s) the bitmap is drawn on
+     */
+    public PackedBitmap(BufferedImage image, Rotation rotation) {
+        this(image, rotation, false);
+    }
+
+    /**
+     * converts the given image into a bitmap
+     *
+     * @param image the image to convert
+     * @param rotation the rotation of the display(s) the bitmap is drawn on
+     * @param transparent true to skip pixels with an alpha value below 50%
+     *                    when drawing the bitmap
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    public PackedBitmap(BufferedImage image, Rotation rotation, boolean transparent) {
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.rotation = rotation;
+
+        final boolean swapped = rotation == Rotation.DEG_90 || rotation == Rotation.DEG_270;
+        this.columns = swapped ? height : width;
+        final int rows = swapped ? width : height;
+        this.pages = (rows + 7) / 8;
+        this.data = new byte[columns * pages];
+        this.mask = transparent ? new byte[columns * pages] : null;
+
+        final int[] values = new int[width * height];
+        RasterReader.read(image, 0, 0, width, height, values);
+
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                //the pixel of the image that ends up at this physical position
+                final int x;
+                final int y;
+                switch (rotation) {
+                    case DEG_90:
+                        x = width - row - 1;
+                        y = column;
+                        break;
+                    case DEG_180:
+                        x = width - column - 1;
+                        y = height - row - 1;
+                        break;
+                    case DEG_270:
+                        x = row;
+                        y = height - column - 1;
+                        break;
+                    default:
+                        x = column;
+                        y = row;
+                        break;
+                }
+
+                final int index = column * pages + row / 8;
+                final int bit = 1 << (row & 0x07);
+                if (values[y * width + x] >= RasterReader.THRESHOLD) {
+                    data[index] |= bit;
+                }
+                if (transparent && (image.getRGB(x, y) >>> 24) >= 0x80) {
+                    mask[index] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * creates an empty opaque bitmap that is filled later on
+     * (e.g. with setGrayFrame())
+     */
+    PackedBitmap(int width, int height, Rotation rotation) {
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+
+        final boolean swapped = rotation == Rotation.DEG_90 || rotation == Rotation.DEG_270;
+        this.columns = swapped ? height : width;
+        this.pages = ((swapped ? width : height) + 7) / 8;
+        this.data = new byte[columns * pages];
+        this.mask = null;
+    }
+
+    /**
+     * replaces the content of this bitmap with an 8 bit gray scale frame
+     * of the same size, dithered with the ordered 8x8 Bayer lookup table
+     * (see OLEDDisplay.drawGrayFrame()).
+     *
+     * @param frame the gray values of the frame, row by row
+     * @param offset the index of the first pixel in frame
+     */
+    void setGrayFrame(byte[] frame, int offset) {
+        //how to get from a physical pixel to the index of its gray value
+        final int base;
+        final int columnStep;
+        final int rowStep;
+        switch (rotation) {
+            case DEG_90:
+                base = width - 1;
+                columnStep = width;
+                rowStep = -1;
+                break;
+            case DEG_180:
+                base = height * width - 1;
+                columnStep = -1;
+                rowStep = -width;
+                break;
+            case DEG_270:
+                base = (height - 1) * width;
+                columnStep = -width;
+                rowStep = 1;
+                break;
+            default:
+                base = 0;
+                columnStep = 1;
+                rowStep = width;
+                break;
+        }
+
+        final byte[] lookup = Dithering.BAYER_8X8_LOOKUP;
+        final int rows = getRows();
+        for (int column = 0; column < columns; column++) {
+            final int lookupColumn = (column & 0x07) << 8;
+            for (int page = 0; page < pages; page++) {
+                final int rowEnd = Math.min(rows, page * 8 + 8);
+                int index = offset + base + column * columnStep + page * 8 * rowStep;
+                int bits = 0;
+                for (int row = page * 8; row < rowEnd; row++) {
+                    bits |= lookup[((row & 0x07) << 11) | lookupColumn | (frame[index] & 0xFF)];
+                    index += rowStep;
+                }
+                data[column * pages + page] = (byte) bits;
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Rotation getRotation() {
+        return rotation;
+    }
+
+    public boolean isTransparent() {
+        return mask != null;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getPages() {
+        return pages;
+    }
+
+    /**
+     * @return the number of valid rows of the physical columns
+     */
+    int getRows() {
+        return rotation == Rotation.DEG_90 || rotation == Rotation.DEG_270 ? width : height;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    byte[] getMask() {
+        return mask;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Reads the brightness of the pixels of a BufferedImage directly from
+ * its raster data, without converting the image first.
+ * <p>
+ * The brightness of a pixel is the sum of its red, green and blue
+ * components (0 - 765), alpha is applied as if the image was drawn
+ * on a black background. Byte gray, int RGB/ARGB and 1 bit binary images
+ * are read directly from their data buffers, all other image types
+ * are read pixel by pixel using getRGB().
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+class RasterReader {
+
+    /**
+     * the maximum brightness of a pixel
+     */
+    static final int MAX_BRIGHTNESS = 3 * 255;
+
+    /**
+     * the brightness from which on a pixel is considered lit. This matches
+     * the conversion of AWT to TYPE_BYTE_BINARY (nearest palette color).
+     */
+    static final int THRESHOLD = (MAX_BRIGHTNESS + 1) / 2;
+
+    private RasterReader() {
+    }
+
+    /**
+     * reads the brightness of the given area of the image
+     *
+     * @param image the image to read
+     * @param x the left edge of the area within the image
+     * @param y the top edge of the area within the image
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param values receives width * height brightness values, row by row
+     */
+    static void read(BufferedImage image, int x, int y, int width, int height, int[] values) {
+        final Raster raster = image.getRaster();
+        final SampleModel sampleModel = raster.getSampleModel();
+        final int originX = x - raster.getSampleModelTranslateX();
+        final int originY = y - raster.getSampleModelTranslateY();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                readGray(((DataBufferByte) raster.getDataBuffer()), (ComponentSampleModel) sampleModel,
+                        originX, originY, width, height, values);
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+                readRgb(((DataBufferInt) raster.getDataBuffer()), (SinglePixelPackedSampleModel) sampleModel,
+                        originX, originY, width, height, false, values);
+                break;
+            case BufferedImage.TYPE_INT_ARGB:
+                readRgb(((DataBufferInt) raster.getDataBuffer()), (SinglePixelPackedSampleModel) sampleModel,
+                        originX, originY, width, height, true, values);
+                break;
+            case BufferedImage.TYPE_BYTE_BINARY:
+                if (sampleModel instanceof MultiPixelPackedSampleModel
+                        && ((MultiPixelPackedSampleModel) sampleModel).getPixelBitStride() == 1) {
+                    readBinary(((DataBufferByte) raster.getDataBuffer()), (MultiPixelPackedSampleModel) sampleModel,
+                            (IndexColorModel) image.getColorModel(), originX, originY, width, height, values);
+                    break;
+                }
+                readGeneric(image, x, y, width, height, values);
+                break;
+            default:
+                readGeneric(image, x, y, width, height, values);
+                break;
+        }
+    }
+
+    private static void readGray(DataBufferByte dataBuffer, ComponentSampleModel sampleModel,
+            int x, int y, int width, int height, int[] values) {
+        final byte[] data = dataBuffer.getData();
+        final int pixelStride = sampleModel.getPixelStride();
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            int pos = dataBuffer.getOffset() + sampleModel.getOffset(x, y + row);
+            for (int column = 0; column < width; column++) {
+                values[index++] = 3 * (data[pos] & 0xFF);
+                pos += pixelStride;
+            }
+        }
+    }
+
+    private static void readRgb(DataBufferInt dataBuffer, SinglePixelPackedSampleModel sampleModel,
+            int x, int y, int width, int height, boolean alpha, int[] values) {
+        final int[] data = dataBuffer.getData();
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            int pos = dataBuffer.getOffset() + sampleModel.getOffset(x, y + row);
+            for (int column = 0; column < width; column++) {
+                values[index++] = alpha ? brightnessArgb(data[pos++]) : brightnessRgb(data[pos++]);
+            }
+        }
+    }
+
+    private static void readBinary(DataBufferByte dataBuffer, MultiPixelPackedSampleModel sampleModel,
+            IndexColorModel colorModel, int x, int y, int width, int height, int[] values) {
+        final byte[] data = dataBuffer.getData();
+        final int stride = sampleModel.getScanlineStride();
+        final int bitOffset = sampleModel.getDataBitOffset();
+        final int zero = brightnessArgb(colorModel.getRGB(0));
+        final int one = colorModel.getMapSize() > 1 ? brightnessArgb(colorModel.getRGB(1)) : zero;
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            final int rowOffset = dataBuffer.getOffset() + (y + row) * stride;
+            for (int column = 0; column < width; column++) {
+                final int bit = bitOffset + x + column;
+                final int sample = (data[rowOffset + (bit >> 3)] >> (7 - (bit & 0x07))) & 0x01;
+                values[index++] = sample == 0 ? zero : one;
+            }
+        }
+    }
+
+    private static void readGeneric(BufferedImage image, int x, int y, int width, int height, int[] values) {
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                values[index++] = brightnessArgb(image.getRGB(x + column, y + row));
+            }
+        }
+    }
+
+    private static int brightnessRgb(int rgb) {
+        return ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+    }
+
+    private static int brightnessArgb(int argb) {
+        final int alpha = (argb >>> 24);
+        if (alpha == 0xFF) {
+            return brightnessRgb(argb);
+        }
+        return brightnessRgb(argb) * alpha / 0xFF;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import com.pi4j.io.gpio.GpioController;
+import com.pi4j.io.gpio.GpioFactory;
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.Pin;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.spi.SpiChannel;
+import com.pi4j.io.spi.SpiDevice;
+import com.pi4j.io.spi.SpiFactory;
+import com.pi4j.io.spi.SpiMode;
+import java.io.IOException;
+
+/**
+ * A display transport for the SPI variant of the SSD1306 modules. The
+ * D/C line selects whether the transmitted bytes are commands (low)
+ * or data (high).
+ * <p>
+ * SPI is much faster than i2c and can transmit the whole image in one
+ * transfer, so the display's chunk size should be set to 1024 bytes:
+ * </p>
+ * <pre>
+ * OLEDDisplay display = new OLEDDisplay(new SpiTransport(SpiChannel.CS0, RaspiPin.GPIO_04, RaspiPin.GPIO_05));
+ * display.setChunkSize(1024);
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class SpiTransport implements DisplayTransport {
+
+    private static final int DEFAULT_SPI_SPEED = 8000000;
+
+    private final SpiDevice device;
+    private final GpioPinDigitalOutput dataCommandPin;
+    private final GpioPinDigitalOutput resetPin;
+    private final GpioController gpio;
+
+    private boolean dataMode;
+
+    /**
+     * opens the given SPI channel with 8 MHz and provisions the D/C and
+     * reset pins
+     *
+     * @param channel the SPI channel the display is connected to
+     * @param dataCommandPin the pin connected to the D/C line
+     * @param resetPin the pin connected to the RST line, may be null if it
+     *                 is not connected
+     * @throws IOException
+     */
+    public SpiTransport(SpiChannel channel, Pin dataCommandPin, Pin resetPin) throws IOException {
+        this(channel, DEFAULT_SPI_SPEED, dataCommandPin, resetPin);
+    }
+
+    /**
+     * opens the given SPI channel with the given speed and provisions the
+     * D/C and reset pins
+     *
+     * @param channel the SPI channel the display is connected to
+     * @param speed the SPI clock in Hz
+     * @param dataCommandPin the pin connected to the D/C line
+     * @param resetPin the pin connected to the RST line, may be null if it
+     *                 is not connected
+     * @throws IOException
+     */
+    public SpiTransport(SpiChannel channel, int speed, Pin dataCommandPin, Pin resetPin) throws IOException {
+        this(SpiFactory.getInstance(channel, speed, SpiMode.MODE_0), GpioFactory.getInstance(), dataCommandPin, resetPin);
+    }
+
+    private SpiTransport(SpiDevice device, GpioController gpio, Pin dataCommandPin, Pin resetPin) throws IOException {
+        this(device, gpio.provisionDigitalOutputPin(dataCommandPin, PinState.LOW),
+                resetPin == null ? null : gpio.provisionDigitalOutputPin(resetPin, PinState.HIGH), gpio);
+    }
+
+    /**
+     * creates a transport for an already opened SPI device and
+     * provisioned pins
+     *
+     * @param device the SPI device the display is connected to
+     * @param dataCommandPin the output connected to the D/C line
+     * @param resetPin the output connected to the RST line, may be null if it
+     *                 is not connected
+     * @throws IOException
+     */
+    public SpiTransport(SpiDevice device, GpioPinDigitalOutput dataCommandPin, GpioPinDigitalOutput resetPin) throws IOException {
+        this(device, dataCommandPin, resetPin, null);
+    }
+
+    private SpiTransport(SpiDevice device, GpioPinDigitalOutput dataCommandPin, GpioPinDigitalOutput resetPin,
+            GpioController gpio) throws IOException {
+        this.device = device;
+        this.dataCommandPin = dataCommandPin;
+        this.resetPin = resetPin;
+        this.gpio = gpio;
+
+        dataCommandPin.low();
+        dataMode = false;
+        reset();
+    }
+
+    private void reset() throws IOException {
+        if (resetPin == null) {
+            return;
+        }
+        try {
+            resetPin.high();
+            Thread.sleep(1);
+            resetPin.low();
+            Thread.sleep(10);
+            resetPin.high();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while resetting the display");
+        }
+    }
+
+    public void writeCommands(byte[] commands, int offset, int length) throws IOException {
+        if (dataMode) {
+            dataCommandPin.low();
+            dataMode = false;
+        }
+        write(commands, offset, length);
+    }
+
+    public void writeData(byte[] data, int offset, int length) throws IOException {
+        if (!dataMode) {
+            dataCommandPin.high();
+            dataMode = true;
+        }
+        write(data, offset, length);
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        final int end = offset + length;
+        for (int i = offset; i < end; i += SpiDevice.MAX_SUPPORTED_BYTES) {
+            device.write(data, i, Math.min(SpiDevice.MAX_SUPPORTED_BYTES, end - i));
+        }
+    }
+
+    public void close() throws IOException {
+        if (gpio != null) {
+            if (resetPin != null) {
+                gpio.unprovisionPin(dataCommandPin, resetPin);
+            } else {
+                gpio.unprovisionPin(dataCommandPin);
+            }
+        }
+    }
+
+}
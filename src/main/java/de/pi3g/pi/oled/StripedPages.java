@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+/**
+ * A staging buffer for changed pages with one lock per page (stripe), so
+ * threads that draw into different pages of the display can hand over
+ * their changes in parallel (see OLEDDisplay.presentPages()).
+ * <p>
+ * Only the lock of a page is needed to stage or merge it: staging never
+ * waits for the display's monitor or for i2c transfers, and merging only
+ * waits for threads that are staging the same page.
+ * </p>
+ *
+ * @author Florian Frankenberger
+ */
+class StripedPages {
+
+    private static final int DISPLAY_WIDTH = OLEDDisplay.DISPLAY_WIDTH;
+    private static final int DISPLAY_PAGES = OLEDDisplay.DISPLAY_PAGES;
+
+    private final Object[] locks = new Object[DISPLAY_PAGES];
+
+    //the staged bytes and the first and last staged column per page
+    //(-1 if nothing is staged), each page is guarded by its lock
+    private final byte[] pages = new byte[DISPLAY_WIDTH * DISPLAY_PAGES];
+    private final int[] stagedStart = new int[DISPLAY_PAGES];
+    private final int[] stagedEnd = new int[DISPLAY_PAGES];
+
+    //set after a page has been staged, so merging can skip the locks
+    //when nothing has been staged at all
+    private volatile boolean staged;
+
+    StripedPages() {
+        for (int page = 0; page < DISPLAY_PAGES; page++) {
+            locks[page] = new Object();
+            stagedStart[page] = -1;
+        }
+    }
+
+    /**
+     * stages the changes of a page of the given canvas and marks the page
+     * of the canvas as unchanged. The canvas needs to be owned by the
+     * calling thread.
+     *
+     * @param source the canvas
+     * @param page the page to stage
+     */
+    void stage(Canvas source, int page) {
+        synchronized (locks[page]) {
+            source.takePageChanges(page, pages, stagedStart, stagedEnd);
+        }
+        staged = true;
+    }
+
+    /**
+     * moves all staged changes into the given canvas
+     *
+     * @param target the canvas, the caller needs to own it (or hold its lock)
+     */
+    void mergeInto(Canvas target) {
+        if (!staged) {
+            return;
+        }
+        staged = false;
+        for (int page = 0; page < DISPLAY_PAGES; page++) {
+            synchronized (locks[page]) {
+                if (stagedStart[page] >= 0) {
+                    target.writePage(page, pages, stagedStart[page], stagedEnd[page]);
+                    stagedStart[page] = -1;
+                }
+            }
+        }
+    }
+
+}
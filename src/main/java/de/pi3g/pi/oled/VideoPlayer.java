@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a video from a file of raw 8 bit gray scale frames (one byte
+ * per pixel, frame after frame, without any header) on a display. Such a
+ * file can be created with e.g.:
+ * <pre>
+ * ffmpeg -i video.mp4 -vf scale=128:64 -pix_fmt gray -f rawvideo video.gray
+ * </pre>
+ * <p>
+ * The file is memory mapped and a converter thread reads, scales
+ * (nearest neighbour) and dithers the frames ahead of time into a small
+ * bounded queue of packed bitmaps. A separate playback thread takes them
+ * from the queue at the requested frame rate, draws them and updates the
+ * display. This way conversion and i2c transfers overlap and a slow
+ * transfer only delays the playback thread. If the playback falls more
+ * than a frame behind, frames are dropped to keep up (see getDroppedFrames()).
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ * <pre>
+ * VideoPlayer player = new VideoPlayer(display, new File("video.gray"), 128, 64, 25, false);
+ * player.start();
+ * player.waitFor();
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class VideoPlayer {
+
+    //number of converted frames that can be buffered
+    private static final int BUFFERED_FRAMES = 4;
+
+    private final OLEDDisplay display;
+    private final MappedByteBuffer video;
+    private final int frameSize;
+    private final int frameCount;
+    private final long frameTime;
+    private final boolean loop;
+
+    //source offsets for the nearest neighbour scaling
+    private final int[] sourceColumns;
+    private final int[] sourceRows;
+
+    //free bitmaps that can be converted into and converted frames
+    private final BlockingQueue<PackedBitmap> freeFrames;
+    private final BlockingQueue<PackedBitmap> convertedFrames;
+
+    //marks the end of the video in convertedFrames
+    private final PackedBitmap endOfVideo;
+
+    private Thread converter;
+    private Thread player;
+    private volatile boolean running;
+
+    private volatile long shownFrames;
+    private volatile long droppedFrames;
+    private volatile IOException error;
+
+    /**
+     * creates a video player for a file of raw 8 bit gray scale frames
+     *
+     * @param display the display to play the video on
+     * @param file the file containing the frames
+     * @param frameWidth the width of a frame in the file
+     * @param frameHeight the height of a frame in the file
+     * @param framesPerSecond the frame rate to play the video with
+     * @param loop true to restart the video when it has ended
+     * @throws IOException
+     */
+    public VideoPlayer(OLEDDisplay display, File file, int frameWidth, int frameHeight,
+            int framesPerSecond, boolean loop) throws IOException {
+        if (frameWidth <= 0 || frameHeight <= 0) {
+            throw new IllegalArgumentException("invalid frame size " + frameWidth + "x" + frameHeight);
+        }
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("invalid frame rate " + framesPerSecond);
+        }
+        this.display = display;
+        this.frameSize = frameWidth * frameHeight;
+        this.frameTime = 1000000000L / framesPerSecond;
+        this.loop = loop;
+
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final long length = in.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("video file is too large to be mapped: " + length + " bytes");
+            }
+            this.frameCount = (int) (length / frameSize);
+            this.video = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            in.close();
+        }
+
+        final int width = display.getWidth();
+        final int height = display.getHeight();
+        this.sourceColumns = new int[width];
+        for (int x = 0; x < width; x++) {
+            sourceColumns[x] = x * frameWidth / width;
+        }
+        this.sourceRows = new int[height];
+        for (int y = 0; y < height; y++) {
+            sourceRows[y] = (y * frameHeight / height) * frameWidth;
+        }
+
+        this.freeFrames = new ArrayBlockingQueue<PackedBitmap>(BUFFERED_FRAMES);
+        this.convertedFrames = new ArrayBlockingQueue<PackedBitmap>(BUFFERED_FRAMES + 1);
+        for (int i = 0; i < BUFFERED_FRAMES; i++) {
+            freeFrames.add(new PackedBitmap(width, height, display.getRotation()));
+        }
+        this.endOfVideo = new PackedBitmap(width, height, display.getRotation());
+    }
+
+    /**
+     * starts the playback in the background
+     */
+    public synchronized void start() {
+        if (converter != null) {
+            throw new IllegalStateException("the video player has already been started");
+        }
+        running = true;
+        converter = new Thread("VideoPlayer converter") {
+            @Override
+            public void run() {
+                convert();
+            }
+        };
+        player = new Thread("VideoPlayer playback") {
+            @Override
+            public void run() {
+                play();
+            }
+        };
+        converter.setDaemon(true);
+        player.setDaemon(true);
+        converter.start();
+        player.start();
+    }
+
+    /**
+     * stops the playback and waits for the background threads to end.
+     * Only the converter thread is interrupted, the playback thread might
+     * be transmitting to the display and finishes its current frame.
+     *
+     * @throws InterruptedException
+     */
+    public void stop() throws InterruptedException {
+        final Thread converterThread;
+        final Thread playerThread;
+        synchronized (this) {
+            converterThread = converter;
+            playerThread = player;
+            if (converterThread == null) {
+                return;
+            }
+            running = false;
+            //wake up the playback thread if it is waiting for the next frame
+            notifyAll();
+        }
+        converterThread.interrupt();
+        converterThread.join();
+        playerThread.join();
+    }
+
+    /**
+     * waits until the video has been played completely (or the playback
+     * was stopped or failed). Never returns for looped videos unless they
+     * are stopped.
+     *
+     * @throws IOException if updating the display failed
+     * @throws InterruptedException
+     */
+    public void waitFor() throws IOException, InterruptedException {
+        final Thread playerThread;
+        synchronized (this) {
+            playerThread = player;
+        }
+        if (playerThread != null) {
+            playerThread.join();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the number of frames that have been sent to the display
+     */
+    public long getShownFrames() {
+        return shownFrames;
+    }
+
+    /**
+     * @return the number of frames that were skipped because the playback
+     *         fell behind (e.g. slow i2c transfers)
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private void convert() {
+        final byte[] scaled = new byte[display.getWidth() * display.getHeight()];
+        try {
+            int frame = 0;
+            while (frame < frameCount) {
+                final PackedBitmap bitmap = freeFrames.take();
+                scale(frame, scaled);
+                bitmap.setGrayFrame(scaled, 0);
+                convertedFrames.put(bitmap);
+
+                frame++;
+                if (loop && frame == frameCount) {
+                    frame = 0;
+                }
+            }
+            convertedFrames.put(endOfVideo);
+        } catch (InterruptedException e) {
+            //stopped
+        }
+    }
+
+    private void scale(int frame, byte[] scaled) {
+        final int frameOffset = frame * frameSize;
+        final int width = sourceColumns.length;
+        int index = 0;
+        for (int y = 0; y < sourceRows.length; y++) {
+            final int rowOffset = frameOffset + sourceRows[y];
+            for (int x = 0; x < width; x++) {
+                scaled[index++] = video.get(rowOffset + sourceColumns[x]);
+            }
+        }
+    }
+
+    private void play() {
+        try {
+            long deadline = System.nanoTime();
+            while (running) {
+                final PackedBitmap bitmap = convertedFrames.poll(frameTime, TimeUnit.NANOSECONDS);
+                if (bitmap == null) {
+                    continue;
+                }
+                if (bitmap == endOfVideo) {
+                    return;
+                }
+
+                final long now = System.nanoTime();
+                if (now - deadline > frameTime) {
+                    final PackedBitmap next = convertedFrames.peek();
+                    if (next != null && next != endOfVideo) {
+                        //more than a frame late: skip this one to catch up
+                        droppedFrames++;
+                        deadline += frameTime;
+                        freeFrames.put(bitmap);
+                        continue;
+                    }
+                    //the converter can't keep up, so there is nothing to catch up with
+                    deadline = now;
+                }
+                if (!awaitDeadline(deadline)) {
+                    return;
+                }
+
+                display.drawBitmap(bitmap, 0, 0);
+                freeFrames.put(bitmap);
+                display.update();
+                shownFrames++;
+                deadline += frameTime;
+            }
+        } catch (InterruptedException e) {
+            //stopped
+        } catch (IOException e) {
+            error = e;
+            converter.interrupt();
+        }
+    }
+
+    /**
+     * waits until the given time or until the playback is stopped
+     *
+     * @return false if the playback has been stopped
+     */
+    private synchronized boolean awaitDeadline(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        while (running && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return running;
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+/**
+ * An in-memory emulation of the SSD1306 controller. The transport interprets
+ * the command and data stream the way the controller does (addressing modes,
+ * COLUMNADDR/PAGEADDR windows, page addressing, contrast, inversion, ...)
+ * and writes the data into an emulated graphic memory (GDDRAM).
+ * <p>
+ * This allows to run the whole rendering stack without a display, e.g.
+ * for tests and benchmarks:
+ * </p>
+ * <pre>
+ * VirtualDisplayTransport virtualDisplay = new VirtualDisplayTransport();
+ * OLEDDisplay display = new OLEDDisplay(virtualDisplay);
+ * display.drawString("Hello", Font.FONT_5X8, 0, 0, true);
+ * display.update();
+ * boolean on = virtualDisplay.isPixelSet(0, 1);
+ * </pre>
+ *
+ * @author Florian Frankenberger
+ */
+public class VirtualDisplayTransport implements DisplayTransport {
+
+    private static final int WIDTH = 128;
+    private static final int PAGES = 8;
+
+    private static final int MODE_HORIZONTAL = 0;
+    private static final int MODE_VERTICAL = 1;
+    private static final int MODE_PAGE = 2;
+
+    private final byte[] memory = new byte[WIDTH * PAGES];
+
+    private int memoryMode = MODE_PAGE;
+    private int columnStart = 0;
+    private int columnEnd = WIDTH - 1;
+    private int pageStart = 0;
+    private int pageEnd = PAGES - 1;
+    private int column = 0;
+    private int page = 0;
+
+    private int contrast = 0x7F;
+    private boolean inverted = false;
+    private boolean displayOn = false;
+    private boolean entireDisplayOn = false;
+
+    //the command that is currently parsed and the parameters received so far
+    private int command = -1;
+    private final int[] parameters = new int[6];
+    private int parameterCount;
+    private int expectedParameters;
+
+    private long commandBytes;
+    private long dataBytes;
+    private long transmissions;
+    private boolean closed = false;
+
+    public synchronized void writeCommands(byte[] commands, int offset, int length) {
+        transmissions++;
+        commandBytes += length;
+        for (int i = offset; i < offset + length; i++) {
+            final int value = commands[i] & 0xFF;
+            if (command < 0) {
+                command = value;
+                parameterCount = 0;
+                expectedParameters = getParameterCount(value);
+            } else {
+                parameters[parameterCount++] = value;
+            }
+            if (parameterCount == expectedParameters) {
+                execute(command);
+                command = -1;
+            }
+        }
+    }
+
+    private static int getParameterCount(int command) {
+        switch (command) {
+            case 0x20:  // memory addressing mode
+            case 0x81:  // contrast
+            case 0x8D:  // charge pump
+            case 0xA8:  // multiplex ratio
+            case 0xD3:  // display offset
+            case 0xD5:  // clock divide ratio
+            case 0xD9:  // pre-charge period
+            case 0xDA:  // com pins
+            case 0xDB:  // vcomh deselect level
+                return 1;
+            case 0x21:  // column address
+            case 0x22:  // page address
+            case 0xA3:  // vertical scroll area
+                return 2;
+            case 0x29:  // vertical and horizontal scroll
+            case 0x2A:
+                return 5;
+            case 0x26:  // horizontal scroll
+            case 0x27:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    private void execute(int command) {
+        switch (command) {
+            case 0x20:
+                memoryMode = parameters[0] & 0x03;
+                break;
+            case 0x21:
+                columnStart = parameters[0] & 0x7F;
+                columnEnd = parameters[1] & 0x7F;
+                column = columnStart;
+                break;
+            case 0x22:
+                pageStart = parameters[0] & 0x07;
+                pageEnd = parameters[1] & 0x07;
+                page = pageStart;
+                break;
+            case 0x81:
+                contrast = parameters[0];
+                break;
+            case 0xA4:
+                entireDisplayOn = false;
+                break;
+            case 0xA5:
+                entireDisplayOn = true;
+                break;
+            case 0xA6:
+                inverted = false;
+                break;
+            case 0xA7:
+                inverted = true;
+                break;
+            case 0xAE:
+                displayOn = false;
+                break;
+            case 0xAF:
+                displayOn = true;
+                break;
+            default:
+                if (command <= 0x0F) {
+                    //lower nibble of the column (page addressing mode)
+                    column = (column & 0xF0) | command;
+                } else if (command >= 0x10 && command <= 0x1F) {
+                    //higher nibble of the column (page addressing mode)
+                    column = ((command & 0x07) << 4) | (column & 0x0F);
+                } else if (command >= 0xB0 && command <= 0xB7) {
+                    //page start (page addressing mode)
+                    page = command & 0x07;
+                }
+                //all other commands don't affect the emulated state
+                break;
+        }
+    }
+
+    public synchronized void writeData(byte[] data, int offset, int length) {
+        transmissions++;
+        dataBytes += length;
+        for (int i = offset; i < offset + length; i++) {
+            memory[page * WIDTH + column] = data[i];
+            advance();
+        }
+    }
+
+    private void advance() {
+        switch (memoryMode) {
+            case MODE_HORIZONTAL:
+                if (++column > columnEnd) {
+                    column = columnStart;
+                    if (++page > pageEnd) {
+                        page = pageStart;
+                    }
+                }
+                break;
+            case MODE_VERTICAL:
+                if (++page > pageEnd) {
+                    page = pageStart;
+                    if (++column > columnEnd) {
+                        column = columnStart;
+                    }
+                }
+                break;
+            default:
+                if (++column >= WIDTH) {
+                    column = 0;
+                }
+                break;
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * @return a copy of the emulated graphic memory in page layout
+     */
+    public synchronized byte[] getMemory() {
+        final byte[] copy = new byte[memory.length];
+        System.arraycopy(memory, 0, copy, 0, memory.length);
+        return copy;
+    }
+
+    /**
+     * returns the value of a pixel in the graphic memory (ignoring
+     * the display's inversion, remapping and on/off state)
+     *
+     * @param x the column (0 - 127)
+     * @param y the row (0 - 63)
+     * @return true if the pixel is set
+     */
+    public synchronized boolean isPixelSet(int x, int y) {
+        return (memory[(y / 8) * WIDTH + x] & (1 << (y & 0x07))) != 0;
+    }
+
+    /**
+     * returns whether a pixel is lit, taking inversion, the display's
+     * on/off state and the entire display on command into account
+     *
+     * @param x the column (0 - 127)
+     * @param y the row (0 - 63)
+     * @return true if the pixel is lit
+     */
+    public synchronized boolean isPixelLit(int x, int y) {
+        if (!displayOn) {
+            return false;
+        }
+        if (entireDisplayOn) {
+            return true;
+        }
+        return isPixelSet(x, y) != inverted;
+    }
+
+    public synchronized int getContrast() {
+        return contrast;
+    }
+
+    public synchronized boolean isInverted() {
+        return inverted;
+    }
+
+    public synchronized boolean isDisplayOn() {
+        return displayOn;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized long getCommandBytes() {
+        return commandBytes;
+    }
+
+    public synchronized long getDataBytes() {
+        return dataBytes;
+    }
+
+    /**
+     * @return the number of calls to writeCommands and writeData so far
+     */
+    public synchronized long getTransmissions() {
+        return transmissions;
+    }
+
+    /**
+     * resets the byte and transmission counters
+     */
+    public synchronized void resetCounters() {
+        commandBytes = 0;
+        dataBytes = 0;
+        transmissions = 0;
+    }
+
+}
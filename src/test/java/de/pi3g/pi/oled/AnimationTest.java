@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes an animation with AnimationWriter and plays it back with
+ * AnimationPlayer.
+ *
+ * @author Florian Frankenberger
+ */
+public class AnimationTest {
+
+    private static final int FRAMES = 40;
+
+    private File file;
+    private final List<byte[]> recordedFrames = new ArrayList<byte[]>();
+
+    @Before
+    public void record() throws IOException {
+        file = File.createTempFile("pi-oled", ".anim");
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final AnimationWriter writer = new AnimationWriter(new FileOutputStream(file), 5, 16);
+        final Random random = new Random(6);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (frame == 20) {
+                //a frame that differs almost completely from its predecessor
+                for (int i = 0; i < 2000; i++) {
+                    display.setPixel(random.nextInt(128), random.nextInt(64), random.nextBoolean());
+                }
+            }
+            display.clearRect(frame, 10, 20, 12, false);
+            display.drawString("frame " + frame, Font.FONT_5X8, frame % 50, 20 + frame % 30, true);
+            writer.addFrame(display);
+            display.update();
+            recordedFrames.add(transport.getMemory());
+        }
+        assertEquals(FRAMES, writer.getFrameCount());
+        writer.close();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void showFrameRestoresEveryFrame() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final AnimationPlayer player = new AnimationPlayer(display, file);
+        assertEquals(FRAMES, player.getFrameCount());
+        assertEquals(5, player.getFrameDuration());
+
+        for (int frame = 0; frame < FRAMES; frame++) {
+            player.showFrame(frame);
+            display.update();
+            assertArrayEquals("frame " + frame, recordedFrames.get(frame), transport.getMemory());
+        }
+
+        //keyframes can be shown in any order
+        for (int frame = 32; frame >= 0; frame -= 16) {
+            player.showFrame(frame);
+            display.update();
+            assertArrayEquals("keyframe " + frame, recordedFrames.get(frame), transport.getMemory());
+        }
+    }
+
+    @Test
+    public void playEndsWithTheLastFrame() throws IOException, InterruptedException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        new AnimationPlayer(display, file).play();
+        assertArrayEquals(recordedFrames.get(FRAMES - 1), transport.getMemory());
+    }
+
+}
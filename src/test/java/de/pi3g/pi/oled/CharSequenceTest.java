@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks drawing CharSequences and char arrays without copying them.
+ *
+ * @author Florian Frankenberger
+ */
+public class CharSequenceTest {
+
+    @Test
+    public void allDrawStringVariantsDrawTheSame() throws IOException {
+        final VirtualDisplayTransport stringTransport = new VirtualDisplayTransport();
+        final VirtualDisplayTransport builderTransport = new VirtualDisplayTransport();
+        final VirtualDisplayTransport arrayTransport = new VirtualDisplayTransport();
+        final OLEDDisplay string = new OLEDDisplay(stringTransport);
+        final OLEDDisplay builder = new OLEDDisplay(builderTransport);
+        final OLEDDisplay array = new OLEDDisplay(arrayTransport);
+
+        string.drawString("Hello\nworld", Font.FONT_5X8, 3, 4, true);
+        string.drawStringCentered("centered", Font.FONT_4X5, 40, true);
+        builder.drawString(new StringBuilder("Hello\nworld"), Font.FONT_5X8, 3, 4, true);
+        builder.drawStringCentered(new StringBuilder("centered"), Font.FONT_4X5, 40, true);
+        final char[] chars = "xxHello\nworldy centered!".toCharArray();
+        array.drawString(chars, 2, 11, Font.FONT_5X8, 3, 4, true);
+        array.drawStringCentered(chars, 15, 8, Font.FONT_4X5, 40, true);
+
+        string.update();
+        builder.update();
+        array.update();
+        assertArrayEquals(stringTransport.getMemory(), builderTransport.getMemory());
+        assertArrayEquals(stringTransport.getMemory(), arrayTransport.getMemory());
+    }
+
+    @Test
+    public void sequenceViewsTheSlice() {
+        final CharSequence sequence = new Canvas.CharArraySequence().wrap("abcdef".toCharArray(), 1, 4);
+        assertEquals(4, sequence.length());
+        assertEquals('b', sequence.charAt(0));
+        assertEquals('e', sequence.charAt(3));
+        assertEquals("cd", sequence.subSequence(1, 3).toString());
+        assertEquals("bcde", sequence.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void charAtBeforeTheSliceThrows() {
+        new Canvas.CharArraySequence().wrap("abcdef".toCharArray(), 1, 4).charAt(-1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void charAtAfterTheSliceThrows() {
+        new Canvas.CharArraySequence().wrap("abcdef".toCharArray(), 1, 4).charAt(4);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void subSequenceAfterTheSliceThrows() {
+        new Canvas.CharArraySequence().wrap("abcdef".toCharArray(), 1, 4).subSequence(2, 5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void invertedSubSequenceThrows() {
+        new Canvas.CharArraySequence().wrap("abcdef".toCharArray(), 1, 4).subSequence(3, 2);
+    }
+
+}
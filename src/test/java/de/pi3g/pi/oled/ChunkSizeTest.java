@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Checks the adaption of the chunk size to the transmissions an
+ * adapter accepts.
+ *
+ * @author Florian Frankenberger
+ */
+public class ChunkSizeTest {
+
+    @Test
+    public void probeFindsTheLargestAcceptedChunkSize() throws IOException {
+        final LimitedTransport transport = new LimitedTransport(100);
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.fillRect(0, 0, 40, 30, true);
+        assertEquals(64, display.probeChunkSize());
+        assertEquals(64, display.getChunkSize());
+
+        final VirtualDisplayTransport expected = new VirtualDisplayTransport();
+        final OLEDDisplay reference = new OLEDDisplay(expected);
+        reference.fillRect(0, 0, 40, 30, true);
+        reference.update();
+        assertArrayEquals(expected.getMemory(), transport.getMemory());
+    }
+
+    @Test
+    public void failingBusKeepsTheChunkSize() throws IOException {
+        final LimitedTransport transport = new LimitedTransport(1024);
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setChunkSize(256);
+        transport.maxLength = 0;
+        try {
+            display.update();
+            fail("the update should fail");
+        } catch (IOException ex) {
+            //expected
+        }
+        assertEquals(256, display.getChunkSize());
+
+        //the failed regions are sent again once the bus works
+        transport.maxLength = 1024;
+        display.update();
+        assertEquals(1024, transport.getDataBytes());
+    }
+
+    @Test
+    public void failingProbeInAsyncModeThrows() throws IOException {
+        final LimitedTransport transport = new LimitedTransport(1024);
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setChunkSize(128);
+        display.setAsyncFlush(true);
+        transport.maxLength = 0;
+        try {
+            display.probeChunkSize();
+            fail("the probe should fail");
+        } catch (IOException ex) {
+            //expected
+        }
+        assertEquals(128, display.getChunkSize());
+        display.setAsyncFlush(false);
+    }
+
+    /**
+     * a virtual display behind an adapter that rejects data transmissions
+     * above a given length
+     */
+    private static class LimitedTransport implements DisplayTransport {
+
+        private final VirtualDisplayTransport display = new VirtualDisplayTransport();
+        private volatile int maxLength;
+
+        LimitedTransport(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        public void writeCommands(byte[] commands, int offset, int length) {
+            display.writeCommands(commands, offset, length);
+        }
+
+        public void writeData(byte[] data, int offset, int length) throws IOException {
+            if (length > maxLength) {
+                throw new IOException("transmission of " + length + " bytes rejected");
+            }
+            display.writeData(data, offset, length);
+        }
+
+        public void close() {
+            display.close();
+        }
+
+        byte[] getMemory() {
+            return display.getMemory();
+        }
+
+        long getDataBytes() {
+            return display.getDataBytes();
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the tracking of dirty spans and the planned windows.
+ *
+ * @author Florian Frankenberger
+ */
+public class DirtyRegionPlannerTest {
+
+    private static final int COLUMNS = 128;
+    private static final int PAGES = 8;
+    private static final int OVERHEAD = 18;
+
+    @Test
+    public void cleanPlannerPlansNoWindows() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        assertFalse(planner.isDirty());
+        assertEquals(0, planner.plan());
+    }
+
+    @Test
+    public void markDirtyWidensTheSpan() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        planner.markDirty(3, 50);
+        planner.markDirty(3, 40);
+        planner.markDirty(3, 60);
+        planner.markDirty(3, 45, 70);
+        assertTrue(planner.isDirty());
+        assertTrue(planner.isDirty(3));
+        assertFalse(planner.isDirty(2));
+        assertEquals(40, planner.getDirtyStart(3));
+        assertEquals(70, planner.getDirtyEnd(3));
+
+        planner.reset(3);
+        assertFalse(planner.isDirty());
+    }
+
+    @Test
+    public void markAllPlansOneWindow() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        planner.markAll();
+        assertEquals(1, planner.plan());
+        assertWindow(planner, 0, 0, COLUMNS - 1, 0, PAGES - 1);
+    }
+
+    @Test
+    public void overlappingSpansOfNeighbouringPagesAreMerged() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        planner.markDirty(0, 10, 20);
+        planner.markDirty(1, 12, 22);
+        assertEquals(1, planner.plan());
+        assertWindow(planner, 0, 10, 22, 0, 1);
+    }
+
+    @Test
+    public void distantSpansAreSentSeparately() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        planner.markDirty(0, 0);
+        planner.markDirty(7, 127);
+        assertEquals(2, planner.plan());
+        //the windows are planned from the bottom to the top
+        assertWindow(planner, 0, 127, 127, 7, 7);
+        assertWindow(planner, 1, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        planner.markAll();
+        planner.plan();
+        planner.reset();
+        assertFalse(planner.isDirty());
+        assertEquals(0, planner.getWindowCount());
+    }
+
+    @Test
+    public void plansCoverAllChangesAndAreNotWorseThanOneWindowPerPage() {
+        final Random random = new Random(7);
+        final DirtyRegionPlanner planner = new DirtyRegionPlanner(COLUMNS, PAGES, OVERHEAD);
+        for (int run = 0; run < 1000; run++) {
+            planner.reset();
+            int perPageCost = 0;
+            for (int page = 0; page < PAGES; page++) {
+                if (random.nextInt(3) == 0) {
+                    final int start = random.nextInt(COLUMNS);
+                    final int end = start + random.nextInt(COLUMNS - start);
+                    planner.markDirty(page, start, end);
+                    perPageCost += OVERHEAD + end - start + 1;
+                }
+            }
+
+            final int windows = planner.plan();
+            final boolean[][] covered = new boolean[PAGES][COLUMNS];
+            int cost = 0;
+            for (int window = 0; window < windows; window++) {
+                cost += OVERHEAD;
+                for (int page = planner.getWindowPageStart(window); page <= planner.getWindowPageEnd(window); page++) {
+                    for (int column = planner.getWindowColumnStart(window); column <= planner.getWindowColumnEnd(window); column++) {
+                        assertFalse("windows overlap", covered[page][column]);
+                        covered[page][column] = true;
+                        cost++;
+                    }
+                }
+            }
+            for (int page = 0; page < PAGES; page++) {
+                if (planner.isDirty(page)) {
+                    for (int column = planner.getDirtyStart(page); column <= planner.getDirtyEnd(page); column++) {
+                        assertTrue("page " + page + " column " + column + " not covered", covered[page][column]);
+                    }
+                }
+            }
+            assertTrue(cost <= perPageCost);
+        }
+    }
+
+    private static void assertWindow(DirtyRegionPlanner planner, int window,
+            int columnStart, int columnEnd, int pageStart, int pageEnd) {
+        assertEquals(columnStart, planner.getWindowColumnStart(window));
+        assertEquals(columnEnd, planner.getWindowColumnEnd(window));
+        assertEquals(pageStart, planner.getWindowPageStart(window));
+        assertEquals(pageEnd, planner.getWindowPageEnd(window));
+    }
+
+}
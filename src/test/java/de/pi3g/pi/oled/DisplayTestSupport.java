@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Helpers for comparing the drawing methods with a reference drawn
+ * pixel by pixel.
+ *
+ * @author Florian Frankenberger
+ */
+final class DisplayTestSupport {
+
+    private DisplayTestSupport() {
+    }
+
+    /**
+     * sets a pixel if it lies on the display
+     */
+    static void setPixelClipped(OLEDDisplay display, int x, int y, boolean on) {
+        if (x >= 0 && y >= 0 && x < display.getWidth() && y < display.getHeight()) {
+            display.setPixel(x, y, on);
+        }
+    }
+
+    /**
+     * updates both displays and compares the memory of their transports
+     */
+    static void assertSameMemory(String message, OLEDDisplay actual, VirtualDisplayTransport actualTransport,
+            OLEDDisplay expected, VirtualDisplayTransport expectedTransport) throws IOException {
+        actual.update();
+        expected.update();
+        assertArrayEquals(message, expectedTransport.getMemory(), actualTransport.getMemory());
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Drives OLEDDisplay with a transport that records all transmissions.
+ *
+ * @author Florian Frankenberger
+ */
+public class DisplayTransportTest {
+
+    @Test
+    public void initializationSwitchesTheDisplayOn() throws IOException {
+        final RecordingTransport transport = new RecordingTransport();
+        new OLEDDisplay(transport);
+        assertTrue(transport.commands.size() > 0);
+        assertEquals(0, transport.data.size());
+        final byte[] last = transport.commands.get(transport.commands.size() - 1);
+        assertEquals((byte) 0xAF, last[last.length - 1]);
+    }
+
+    @Test
+    public void commandsAndDataGoThroughTheTransport() throws IOException {
+        final RecordingTransport transport = new RecordingTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setChunkSize(1024);
+        transport.commands.clear();
+
+        display.setContrast(0x42);
+        assertArrayEquals(new byte[] {(byte) 0x81, 0x42}, transport.commands.get(0));
+
+        display.setPixel(0, 0, true);
+        display.update();
+        assertEquals(1, transport.data.size());
+        assertEquals(1024, transport.data.get(0).length);
+        assertEquals(0x01, transport.data.get(0)[0]);
+    }
+
+    /**
+     * records copies of all transmissions
+     */
+    private static class RecordingTransport implements DisplayTransport {
+
+        private final List<byte[]> commands = new ArrayList<byte[]>();
+        private final List<byte[]> data = new ArrayList<byte[]>();
+
+        public void writeCommands(byte[] commands, int offset, int length) {
+            this.commands.add(copy(commands, offset, length));
+        }
+
+        public void writeData(byte[] data, int offset, int length) {
+            this.data.add(copy(data, offset, length));
+        }
+
+        public void close() {
+        }
+
+        private static byte[] copy(byte[] source, int offset, int length) {
+            final byte[] copy = new byte[length];
+            System.arraycopy(source, offset, copy, 0, length);
+            return copy;
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the dithering methods of drawImage().
+ *
+ * @author Florian Frankenberger
+ */
+public class DitheringTest {
+
+    private static final Dithering[] ORDERED = {Dithering.BAYER_2X2, Dithering.BAYER_4X4, Dithering.BAYER_8X8};
+
+    @Test
+    public void blackAndWhiteStayUnchanged() throws IOException {
+        for (Dithering dithering : Dithering.values()) {
+            assertEquals(dithering.toString(), 0, countLit(drawGray(dithering, 0)));
+            assertEquals(dithering.toString(), 128 * 64, countLit(drawGray(dithering, 255)));
+        }
+    }
+
+    @Test
+    public void densityFollowsTheGrayLevel() throws IOException {
+        for (Dithering dithering : Dithering.values()) {
+            if (dithering == Dithering.THRESHOLD) {
+                continue;
+            }
+            int previous = -1;
+            for (int gray = 0; gray <= 255; gray += 15) {
+                final int lit = countLit(drawGray(dithering, gray));
+                assertTrue(dithering + " gray " + gray, lit >= previous);
+                //Atkinson drops a quarter of the error on purpose, which
+                //clips dark and light tones
+                if (dithering != Dithering.ATKINSON) {
+                    //a 2x2 matrix only has four gray levels
+                    final double tolerance = dithering == Dithering.BAYER_2X2 ? 0.13 : 0.05;
+                    assertEquals(dithering + " gray " + gray, gray * 128 * 64 / 255.0, lit, 128 * 64 * tolerance);
+                }
+                previous = lit;
+            }
+        }
+    }
+
+    @Test
+    public void orderedPatternIsAnchoredAtTheDisplay() throws IOException {
+        for (Rotation rotation : Rotation.values()) {
+            for (Dithering dithering : ORDERED) {
+                final VirtualDisplayTransport fullTransport = new VirtualDisplayTransport();
+                final OLEDDisplay full = new OLEDDisplay(fullTransport, rotation);
+                full.drawImage(grayImage(full.getWidth(), full.getHeight(), 100), 0, 0, dithering);
+                full.update();
+
+                //partly off screen
+                final VirtualDisplayTransport shiftedTransport = new VirtualDisplayTransport();
+                final OLEDDisplay shifted = new OLEDDisplay(shiftedTransport, rotation);
+                shifted.drawImage(grayImage(200, 200, 100), -5, -3, dithering);
+                shifted.update();
+                assertArrayEquals(rotation + " " + dithering, fullTransport.getMemory(), shiftedTransport.getMemory());
+
+                //a small image at an odd position
+                final VirtualDisplayTransport smallTransport = new VirtualDisplayTransport();
+                final OLEDDisplay small = new OLEDDisplay(smallTransport, rotation);
+                small.drawImage(grayImage(21, 11, 100), 13, 7, dithering);
+                small.update();
+                for (int x = 0; x < 128; x++) {
+                    for (int y = 0; y < 64; y++) {
+                        if (smallTransport.isPixelSet(x, y)) {
+                            assertTrue(rotation + " " + dithering, fullTransport.isPixelSet(x, y));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] drawGray(Dithering dithering, int gray) throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.drawImage(grayImage(128, 64, gray), 0, 0, dithering);
+        display.update();
+        return transport.getMemory();
+    }
+
+    private static BufferedImage grayImage(int width, int height, int gray) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final byte[] data = new byte[width * height];
+        Arrays.fill(data, (byte) gray);
+        image.getRaster().setDataElements(0, 0, width, height, data);
+        return image;
+    }
+
+    private static int countLit(byte[] memory) {
+        int count = 0;
+        for (byte value : memory) {
+            count += Integer.bitCount(value & 0xFF);
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Compares commands drawn through a DrawCommandQueue with the same
+ * commands drawn directly on a display.
+ *
+ * @author Florian Frankenberger
+ */
+public class DrawCommandQueueTest {
+
+    private final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+    private final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+    private final OLEDDisplay display;
+    private final OLEDDisplay expected;
+
+    public DrawCommandQueueTest() throws IOException {
+        display = new OLEDDisplay(transport);
+        expected = new OLEDDisplay(expectedTransport);
+    }
+
+    @Test
+    public void fullQueueRejectsCommands() throws IOException, InterruptedException {
+        final DrawCommandQueue queue = new DrawCommandQueue(display, 3);
+        //the capacity is rounded up to 4 and nothing drains the queue yet
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.setPixel(i, i, true));
+            expected.setPixel(i, i, true);
+        }
+        assertFalse(queue.setPixel(10, 10, true));
+        assertFalse(queue.fillRect(0, 0, 128, 64, true));
+        assertEquals(2, queue.getDroppedCommands());
+
+        queue.start();
+        queue.flush();
+        queue.stop();
+        DisplayTestSupport.assertSameMemory("accepted commands", display, transport, expected, expectedTransport);
+    }
+
+    @Test
+    public void ringBufferWrapsAround() throws IOException, InterruptedException {
+        final DrawCommandQueue queue = new DrawCommandQueue(display, 4);
+        queue.start();
+        final Random random = new Random(23);
+        for (int i = 0; i < 2000; i++) {
+            final int x = random.nextInt(128);
+            final int y = random.nextInt(64);
+            final boolean on = random.nextBoolean();
+            while (!queue.setPixel(x, y, on)) {
+                queue.flush();
+            }
+            expected.setPixel(x, y, on);
+            if (i % 100 == 0) {
+                final char c = (char) (' ' + random.nextInt(90));
+                while (!queue.drawChar(c, Font.FONT_5X8, x, y, true)) {
+                    queue.flush();
+                }
+                expected.drawChar(c, Font.FONT_5X8, x, y, true);
+            }
+        }
+        queue.flush();
+        queue.stop();
+        DisplayTestSupport.assertSameMemory("wrapped commands", display, transport, expected, expectedTransport);
+    }
+
+    @Test
+    public void numbersAreFormattedLikeLongToString() throws IOException, InterruptedException {
+        final long[] values = {0, 7, -7, 1234567890L, Long.MAX_VALUE, Long.MIN_VALUE};
+        final DrawCommandQueue queue = new DrawCommandQueue(display, 64);
+        queue.start();
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(queue.drawNumber(values[i], Font.FONT_5X8, 0, i * 10, true));
+            expected.drawString(Long.toString(values[i]), Font.FONT_5X8, 0, i * 10, true);
+        }
+        queue.stop();
+        DisplayTestSupport.assertSameMemory("numbers", display, transport, expected, expectedTransport);
+    }
+
+    @Test
+    public void stopAppliesQueuedCommands() throws IOException, InterruptedException {
+        final DrawCommandQueue queue = new DrawCommandQueue(display, 16);
+        queue.start();
+        queue.fillRect(10, 10, 50, 20, true);
+        queue.fillRect(20, 15, 10, 5, false);
+        queue.stop();
+        expected.fillRect(10, 10, 50, 20, true);
+        expected.fillRect(20, 15, 10, 5, false);
+        DisplayTestSupport.assertSameMemory("queued commands", display, transport, expected, expectedTransport);
+    }
+
+}
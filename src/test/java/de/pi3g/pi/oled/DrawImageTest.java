@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import static de.pi3g.pi.oled.DisplayTestSupport.assertSameMemory;
+import static de.pi3g.pi.oled.DisplayTestSupport.setPixelClipped;
+import org.junit.Test;
+
+/**
+ * Compares drawImage() in every rotation with the image drawn pixel by
+ * pixel using the brightness threshold.
+ *
+ * @author Florian Frankenberger
+ */
+public class DrawImageTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_BYTE_BINARY,
+        BufferedImage.TYPE_3BYTE_BGR
+    };
+
+    @Test
+    public void drawImageMatchesSetPixel() throws IOException {
+        final Random random = new Random(3);
+        for (Rotation rotation : Rotation.values()) {
+            for (int type : TYPES) {
+                final VirtualDisplayTransport actualTransport = new VirtualDisplayTransport();
+                final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+                final OLEDDisplay actual = new OLEDDisplay(actualTransport, rotation);
+                final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+
+                for (int i = 0; i < 10; i++) {
+                    final BufferedImage image = randomImage(random, type);
+                    final int x = random.nextInt(100) - 20;
+                    final int y = random.nextInt(100) - 20;
+                    actual.drawImage(image, x, y);
+                    for (int ix = 0; ix < image.getWidth(); ix++) {
+                        for (int iy = 0; iy < image.getHeight(); iy++) {
+                            setPixelClipped(expected, x + ix, y + iy, isLight(image, ix, iy));
+                        }
+                    }
+                }
+                assertSameMemory(rotation + " type " + type, actual, actualTransport, expected, expectedTransport);
+            }
+        }
+    }
+
+    private static BufferedImage randomImage(Random random, int type) {
+        final int width = 1 + random.nextInt(90);
+        final int height = 1 + random.nextInt(90);
+        final BufferedImage image = new BufferedImage(width, height, type);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int alpha = 0xFF000000;
+                if (type == BufferedImage.TYPE_INT_ARGB && random.nextBoolean()) {
+                    alpha = random.nextInt(256) << 24;
+                }
+                image.setRGB(x, y, alpha | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static boolean isLight(BufferedImage image, int x, int y) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            //gray images are read from their samples, without the color
+            //space conversion of getRGB()
+            return 3 * image.getRaster().getSample(x, y, 0) >= 383;
+        }
+        return isLight(image.getRGB(x, y));
+    }
+
+    /**
+     * the threshold used by drawImage(): the sum of the color components,
+     * premultiplied with the alpha value, needs to reach half of the maximum
+     */
+    static boolean isLight(int argb) {
+        final int alpha = argb >>> 24;
+        int sum = ((argb >> 16) & 0xFF) + ((argb >> 8) & 0xFF) + (argb & 0xFF);
+        if (alpha != 0xFF) {
+            sum = sum * alpha / 0xFF;
+        }
+        return sum >= 383;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.io.IOException;
+import java.util.Random;
+import static de.pi3g.pi.oled.DisplayTestSupport.assertSameMemory;
+import org.junit.Test;
+
+/**
+ * Compares drawString() in every rotation with the glyphs drawn pixel
+ * by pixel from the font data.
+ *
+ * @author Florian Frankenberger
+ */
+public class DrawStringTest {
+
+    @Test
+    public void drawStringMatchesSetPixel() throws IOException {
+        final Random random = new Random(2);
+        for (Rotation rotation : Rotation.values()) {
+            for (Font font : Font.values()) {
+                final VirtualDisplayTransport actualTransport = new VirtualDisplayTransport();
+                final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+                final OLEDDisplay actual = new OLEDDisplay(actualTransport, rotation);
+                final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+
+                for (int i = 0; i < 30; i++) {
+                    final String text = randomText(random, font);
+                    final int x = random.nextInt(140) - 10;
+                    final int y = random.nextInt(140) - 10;
+                    final boolean on = random.nextBoolean();
+                    actual.drawString(text, font, x, y, on);
+                    drawStringReference(expected, text, font, x, y, on);
+                }
+                assertSameMemory(rotation + " " + font, actual, actualTransport, expected, expectedTransport);
+            }
+        }
+    }
+
+    /**
+     * a random text of the font's characters with a line break and
+     * (for fonts without them) characters drawn as '?'
+     */
+    private static String randomText(Random random, Font font) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(12); i >= 0; i--) {
+            if (i == 5) {
+                text.append('\n');
+            } else if (i == 7) {
+                text.append((char) 0x2603);
+            } else {
+                text.append((char) (font.getMinChar() + random.nextInt(font.getMaxChar() - font.getMinChar() + 1)));
+            }
+        }
+        return text.toString();
+    }
+
+    private static void drawStringReference(OLEDDisplay display, String text, Font font, int x, int y, boolean on) {
+        int posX = x;
+        int posY = y;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                posY += font.getOuterHeight();
+                posX = x;
+                continue;
+            }
+            if (posX >= 0 && posX + font.getWidth() < display.getWidth()
+                    && posY >= 0 && posY + font.getHeight() < display.getHeight()) {
+                if (c < font.getMinChar() || c > font.getMaxChar()) {
+                    c = '?';
+                }
+                final int index = c - font.getMinChar();
+                for (int column = 0; column < font.getWidth(); column++) {
+                    int line = font.getData(index * font.getWidth() + column);
+                    for (int row = 0; row < font.getHeight(); row++) {
+                        if ((line & 0x01) != 0) {
+                            display.setPixel(posX + column, posY + row, on);
+                        }
+                        line >>= 1;
+                    }
+                }
+            }
+            posX += font.getOuterWidth();
+        }
+    }
+
+}
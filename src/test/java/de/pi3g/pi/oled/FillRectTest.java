@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.io.IOException;
+import java.util.Random;
+import static de.pi3g.pi.oled.DisplayTestSupport.assertSameMemory;
+import static de.pi3g.pi.oled.DisplayTestSupport.setPixelClipped;
+import org.junit.Test;
+
+/**
+ * Compares fillRect() and clearRect() in every rotation with rectangles
+ * drawn pixel by pixel.
+ *
+ * @author Florian Frankenberger
+ */
+public class FillRectTest {
+
+    @Test
+    public void fillRectMatchesSetPixel() throws IOException {
+        final Random random = new Random(1);
+        for (Rotation rotation : Rotation.values()) {
+            final VirtualDisplayTransport actualTransport = new VirtualDisplayTransport();
+            final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+            final OLEDDisplay actual = new OLEDDisplay(actualTransport, rotation);
+            final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+
+            for (int i = 0; i < 200; i++) {
+                final int x = random.nextInt(160) - 16;
+                final int y = random.nextInt(160) - 16;
+                final int width = random.nextInt(80);
+                final int height = random.nextInt(80);
+                final boolean on = random.nextBoolean();
+                if (random.nextBoolean()) {
+                    actual.fillRect(x, y, width, height, on);
+                } else {
+                    actual.clearRect(x, y, width, height, on);
+                }
+                for (int px = x; px < x + width; px++) {
+                    for (int py = y; py < y + height; py++) {
+                        setPixelClipped(expected, px, py, on);
+                    }
+                }
+                if (i % 20 == 0) {
+                    assertSameMemory(rotation.toString(), actual, actualTransport, expected, expectedTransport);
+                }
+            }
+            assertSameMemory(rotation.toString(), actual, actualTransport, expected, expectedTransport);
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks that the synchronous and the asynchronous flush modes end up
+ * with the same display memory.
+ *
+ * @author Florian Frankenberger
+ */
+public class FlushModeTest {
+
+    private static final int FRAMES = 200;
+
+    @Test
+    public void asyncFlushProducesTheSameImage() throws IOException {
+        final byte[] sync = render(false, 0);
+        final byte[] async = render(true, 0);
+        assertArrayEquals(sync, async);
+    }
+
+    @Test
+    public void coalescedFlushProducesTheSameImage() throws IOException {
+        final byte[] sync = render(false, 0);
+        final byte[] coalesced = render(true, 5);
+        assertArrayEquals(sync, coalesced);
+    }
+
+    @Test
+    public void coalescedUpdatesAreMerged() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.update();
+        display.setAsyncFlush(true);
+        display.setFlushInterval(200);
+        transport.resetCounters();
+
+        for (int i = 0; i < 50; i++) {
+            display.setPixel(i, 0, true);
+            display.update();
+        }
+        display.setAsyncFlush(false);
+
+        //the first frame is sent immediately, all later ones are merged
+        //into the transmission after the interval
+        assertTrue("transmissions: " + transport.getTransmissions(), transport.getTransmissions() < 20);
+        final byte[] image = new byte[128 * 8];
+        display.copyImageBuffer(image);
+        assertArrayEquals(image, transport.getMemory());
+    }
+
+    @Test
+    public void togglingTheAsyncModeLosesNoUpdates() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final Random random = new Random(8);
+        final byte[] image = new byte[128 * 8];
+        for (int i = 0; i < 300; i++) {
+            display.setAsyncFlush(true);
+            drawFrame(display, random, i);
+            display.update();
+            display.setAsyncFlush(false);
+
+            display.copyImageBuffer(image);
+            assertArrayEquals("run " + i, image, transport.getMemory());
+        }
+    }
+
+    private static byte[] render(boolean asyncFlush, int flushInterval) throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setAsyncFlush(asyncFlush);
+        display.setFlushInterval(flushInterval);
+
+        final Random random = new Random(5);
+        for (int frame = 0; frame < FRAMES; frame++) {
+            drawFrame(display, random, frame);
+            display.update();
+        }
+
+        //waits until the last frame has been sent
+        display.setAsyncFlush(false);
+        return transport.getMemory();
+    }
+
+    private static void drawFrame(OLEDDisplay display, Random random, int frame) {
+        display.fillRect(random.nextInt(128), random.nextInt(64), random.nextInt(40), random.nextInt(20), random.nextBoolean());
+        display.drawString("frame " + frame, Font.FONT_5X8, random.nextInt(100), random.nextInt(56), true);
+        display.setPixel(random.nextInt(128), random.nextInt(64), true);
+    }
+
+}
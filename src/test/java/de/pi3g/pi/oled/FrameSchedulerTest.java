@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Runs FrameSchedulers on virtual displays.
+ *
+ * @author Florian Frankenberger
+ */
+public class FrameSchedulerTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Test
+    public void lastRenderedFrameIsOnTheDisplay() throws IOException, InterruptedException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final RecordingRenderer renderer = new RecordingRenderer(0);
+        final FrameScheduler scheduler = new FrameScheduler(display, 100, renderer);
+        scheduler.start();
+        awaitRenderedFrames(scheduler, 5);
+        scheduler.stop();
+
+        final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+        final OLEDDisplay expected = new OLEDDisplay(expectedTransport);
+        expected.drawString("frame " + renderer.getLastFrame(), Font.FONT_5X8, 0, 0, true);
+        DisplayTestSupport.assertSameMemory("last frame", display, transport, expected, expectedTransport);
+    }
+
+    @Test
+    public void schedulerCanBeStartedAgain() throws IOException, InterruptedException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport());
+        final FrameScheduler scheduler = new FrameScheduler(display, 200, new RecordingRenderer(0));
+        scheduler.start();
+        awaitRenderedFrames(scheduler, 3);
+        scheduler.stop();
+        //stopping twice does no harm
+        scheduler.stop();
+
+        final long rendered = scheduler.getRenderedFrames();
+        Thread.sleep(50);
+        assertEquals(rendered, scheduler.getRenderedFrames());
+
+        scheduler.start();
+        awaitRenderedFrames(scheduler, rendered + 3);
+        scheduler.stop();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void runningSchedulerCannotBeStartedTwice() throws IOException, InterruptedException {
+        final FrameScheduler scheduler = new FrameScheduler(new OLEDDisplay(new VirtualDisplayTransport()), 100,
+                new RecordingRenderer(0));
+        scheduler.start();
+        try {
+            scheduler.start();
+        } finally {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void slowRendererDropsFrames() throws IOException, InterruptedException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport());
+        //every frame takes more than three frame times
+        final RecordingRenderer renderer = new RecordingRenderer(35);
+        final FrameScheduler scheduler = new FrameScheduler(display, 100, renderer);
+        scheduler.start();
+        awaitRenderedFrames(scheduler, 5);
+        scheduler.stop();
+
+        final long rendered = scheduler.getRenderedFrames();
+        final long dropped = scheduler.getDroppedFrames();
+        assertTrue("dropped " + dropped + " of " + rendered, dropped >= 2 * rendered);
+        //the skipped frames are counted in the frame numbers
+        final List<Long> frames = renderer.getFrames();
+        final long lastFrame = frames.get(frames.size() - 1);
+        assertTrue("last frame " + lastFrame, lastFrame >= 2 * (frames.size() - 1));
+        assertTrue("last frame " + lastFrame, lastFrame < rendered + dropped);
+        assertTrue(scheduler.getAverageRenderTime() >= 35000);
+    }
+
+    @Test
+    public void failingFrameDoesNotStopTheScheduler() throws IOException, InterruptedException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport());
+        final FrameScheduler scheduler = new FrameScheduler(display, 200, new FrameRenderer() {
+            public void renderFrame(Canvas canvas, long frame) {
+                if (frame % 2 == 0) {
+                    throw new IllegalStateException("frame " + frame);
+                }
+            }
+        });
+        scheduler.start();
+        awaitRenderedFrames(scheduler, 6);
+        scheduler.stop();
+    }
+
+    private static void awaitRenderedFrames(FrameScheduler scheduler, long frames) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        while (scheduler.getRenderedFrames() < frames) {
+            assertTrue("rendered only " + scheduler.getRenderedFrames() + " frames",
+                    System.currentTimeMillis() < end);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * draws the frame number and remembers it
+     */
+    private static class RecordingRenderer implements FrameRenderer {
+
+        private final long delay;
+        private final List<Long> frames = new ArrayList<Long>();
+
+        RecordingRenderer(long delay) {
+            this.delay = delay;
+        }
+
+        public void renderFrame(Canvas canvas, long frame) {
+            canvas.clear();
+            canvas.drawString("frame " + frame, Font.FONT_5X8, 0, 0, true);
+            synchronized (this) {
+                frames.add(frame);
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        synchronized List<Long> getFrames() {
+            return new ArrayList<Long>(frames);
+        }
+
+        synchronized long getLastFrame() {
+            return frames.get(frames.size() - 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import static de.pi3g.pi.oled.DisplayTestSupport.assertSameMemory;
+import static de.pi3g.pi.oled.DisplayTestSupport.setPixelClipped;
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+/**
+ * Compares drawGrayFrame() with frames dithered pixel by pixel.
+ *
+ * @author Florian Frankenberger
+ */
+public class GrayFrameTest {
+
+    @Test
+    public void drawGrayFrameMatchesSetPixel() throws IOException {
+        final Random random = new Random(9);
+        for (Rotation rotation : Rotation.values()) {
+            final VirtualDisplayTransport actualTransport = new VirtualDisplayTransport();
+            final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+            final OLEDDisplay actual = new OLEDDisplay(actualTransport, rotation);
+            final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+
+            for (int i = 0; i < 20; i++) {
+                final int width = 1 + random.nextInt(100);
+                final int height = 1 + random.nextInt(100);
+                final int offset = random.nextInt(10);
+                final byte[] frame = new byte[offset + width * height];
+                random.nextBytes(frame);
+                final int x = random.nextInt(150) - 30;
+                final int y = random.nextInt(150) - 30;
+
+                actual.drawGrayFrame(frame, offset, width, height, x, y);
+                for (int fx = 0; fx < width; fx++) {
+                    for (int fy = 0; fy < height; fy++) {
+                        final int gray = frame[offset + fy * width + fx] & 0xFF;
+                        setPixelClipped(expected, x + fx, y + fy, isLit(expected, x + fx, y + fy, gray));
+                    }
+                }
+            }
+            assertSameMemory(rotation.toString(), actual, actualTransport, expected, expectedTransport);
+        }
+    }
+
+    @Test
+    public void matchesOrderedDitheringOfDrawImage() throws IOException {
+        final Random random = new Random(10);
+        final byte[] frame = new byte[128 * 64];
+        random.nextBytes(frame);
+
+        final VirtualDisplayTransport frameTransport = new VirtualDisplayTransport();
+        final OLEDDisplay frameDisplay = new OLEDDisplay(frameTransport);
+        frameDisplay.drawGrayFrame(frame, 0, 128, 64, 0, 0);
+        frameDisplay.update();
+
+        final BufferedImage image = new BufferedImage(128, 64, BufferedImage.TYPE_BYTE_GRAY);
+        image.getRaster().setDataElements(0, 0, 128, 64, frame);
+        final VirtualDisplayTransport imageTransport = new VirtualDisplayTransport();
+        final OLEDDisplay imageDisplay = new OLEDDisplay(imageTransport);
+        imageDisplay.drawImage(image, 0, 0, Dithering.BAYER_8X8);
+        imageDisplay.update();
+
+        assertArrayEquals(imageTransport.getMemory(), frameTransport.getMemory());
+    }
+
+    /**
+     * the 8x8 Bayer matrix is anchored at the physical display position
+     */
+    private static boolean isLit(OLEDDisplay display, int x, int y, int gray) {
+        final int column;
+        final int row;
+        switch (display.getRotation()) {
+            case DEG_90: {
+                column = y;
+                row = display.getWidth() - x - 1;
+                break;
+            }
+            case DEG_180: {
+                column = display.getWidth() - x - 1;
+                row = display.getHeight() - y - 1;
+                break;
+            }
+            case DEG_270: {
+                column = display.getHeight() - y - 1;
+                row = x;
+                break;
+            }
+            default: {
+                column = x;
+                row = y;
+                break;
+            }
+        }
+        return Dithering.BAYER_8X8_LOOKUP[((row & 0x07) << 11) | ((column & 0x07) << 8) | gray] != 0;
+    }
+
+}
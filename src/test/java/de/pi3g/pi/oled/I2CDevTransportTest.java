@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes through I2CDevTransport into a regular file and checks the
+ * framing of the transmissions.
+ *
+ * @author Florian Frankenberger
+ */
+public class I2CDevTransportTest {
+
+    private File file;
+    private RandomAccessFile out;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("pi-oled", ".i2c");
+        out = new RandomAccessFile(file, "rw");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        out.close();
+        file.delete();
+    }
+
+    @Test
+    public void commandsAndDataArePrefixedWithTheControlByte() throws IOException {
+        final I2CDevTransport transport = new I2CDevTransport(out.getChannel());
+        transport.writeCommands(new byte[] {(byte) 0xAE, (byte) 0xD5, (byte) 0x80}, 1, 2);
+        transport.writeData(new byte[] {1, 2, 3, 4}, 0, 4);
+        transport.close();
+
+        assertArrayEquals(new byte[] {0x00, (byte) 0xD5, (byte) 0x80, 0x40, 1, 2, 3, 4}, readFile());
+    }
+
+    @Test
+    public void largeWritesAreSplitIntoSeveralTransmissions() throws IOException {
+        final byte[] data = new byte[1500];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final I2CDevTransport transport = new I2CDevTransport(out.getChannel());
+        transport.writeData(data, 0, data.length);
+        transport.close();
+
+        final byte[] written = readFile();
+        assertEquals(data.length + 2, written.length);
+        final ByteBuffer expected = ByteBuffer.allocate(data.length + 2);
+        expected.put((byte) 0x40).put(data, 0, 1024);
+        expected.put((byte) 0x40).put(data, 1024, data.length - 1024);
+        assertArrayEquals(expected.array(), written);
+    }
+
+    @Test
+    public void displayUpdateWritesTheWholeFrameAtOnce() throws IOException {
+        final OLEDDisplay display = new OLEDDisplay(new I2CDevTransport(out.getChannel()));
+        display.setChunkSize(1024);
+        display.setPixel(0, 0, true);
+        display.update();
+
+        //the frame is the last transmission: control byte plus 1024 data bytes
+        final byte[] written = readFile();
+        final byte[] expected = new byte[1 + 1024];
+        expected[0] = 0x40;
+        expected[1] = 0x01;
+        final byte[] frame = new byte[expected.length];
+        System.arraycopy(written, written.length - frame.length, frame, 0, frame.length);
+        assertArrayEquals(expected, frame);
+    }
+
+    private byte[] readFile() throws IOException {
+        //the transport may have closed the channel already
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final byte[] content = new byte[(int) in.length()];
+            in.readFully(content);
+            return content;
+        } finally {
+            in.close();
+        }
+    }
+
+}
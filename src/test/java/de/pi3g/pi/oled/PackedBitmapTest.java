@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import static de.pi3g.pi.oled.DisplayTestSupport.assertSameMemory;
+import static de.pi3g.pi.oled.DisplayTestSupport.setPixelClipped;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Compares drawBitmap() in every rotation with the source image drawn
+ * pixel by pixel.
+ *
+ * @author Florian Frankenberger
+ */
+public class PackedBitmapTest {
+
+    @Test
+    public void drawBitmapMatchesSetPixel() throws IOException {
+        final Random random = new Random(4);
+        for (Rotation rotation : Rotation.values()) {
+            for (int transparency = 0; transparency < 2; transparency++) {
+                final boolean transparent = transparency == 1;
+                final VirtualDisplayTransport actualTransport = new VirtualDisplayTransport();
+                final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+                final OLEDDisplay actual = new OLEDDisplay(actualTransport, rotation);
+                final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+
+                for (int i = 0; i < 20; i++) {
+                    final int width = 1 + random.nextInt(70);
+                    final int height = 1 + random.nextInt(70);
+                    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                    for (int ix = 0; ix < width; ix++) {
+                        for (int iy = 0; iy < height; iy++) {
+                            final int alpha = random.nextBoolean() ? 0xFF000000 : 0x10000000;
+                            image.setRGB(ix, iy, alpha | (random.nextBoolean() ? 0xFFFFFF : 0));
+                        }
+                    }
+                    final int x = random.nextInt(150) - 30;
+                    final int y = random.nextInt(150) - 30;
+                    final PackedBitmap bitmap = new PackedBitmap(image, rotation, transparent);
+                    assertEquals(width, bitmap.getWidth());
+                    assertEquals(height, bitmap.getHeight());
+
+                    actual.drawBitmap(bitmap, x, y);
+                    for (int ix = 0; ix < width; ix++) {
+                        for (int iy = 0; iy < height; iy++) {
+                            final int argb = image.getRGB(ix, iy);
+                            if (transparent && (argb >>> 24) < 128) {
+                                continue;
+                            }
+                            setPixelClipped(expected, x + ix, y + iy, DrawImageTest.isLight(argb));
+                        }
+                    }
+                }
+                assertSameMemory(rotation + " transparent " + transparent,
+                        actual, actualTransport, expected, expectedTransport);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bitmapOfAnotherRotationIsRejected() throws IOException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport(), Rotation.DEG_90);
+        final BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        display.drawBitmap(new PackedBitmap(image, Rotation.DEG_0), 0, 0);
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Compares frames handed over from a canvas with frames drawn directly
+ * on a display.
+ *
+ * @author Florian Frankenberger
+ */
+public class PresentTest {
+
+    private static final int FRAMES = 100;
+
+    @Test
+    public void presentProducesTheSameImage() throws IOException {
+        for (Rotation rotation : Rotation.values()) {
+            final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+            final OLEDDisplay display = new OLEDDisplay(transport, rotation);
+            final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+            final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+            final Canvas canvas = display.createCanvas();
+
+            final Random random = new Random(21);
+            for (int frame = 0; frame < FRAMES; frame++) {
+                final long seed = random.nextLong();
+                drawFrame(canvas, new Random(seed), frame);
+                drawFrame(expected, new Random(seed), frame);
+                display.present(canvas);
+                DisplayTestSupport.assertSameMemory(rotation + " frame " + frame, display, transport, expected, expectedTransport);
+            }
+        }
+    }
+
+    @Test
+    public void presentOnlyCopiesChanges() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final Canvas canvas = display.createCanvas();
+        canvas.fillRect(0, 0, 128, 64, true);
+        display.present(canvas);
+        display.update();
+
+        //pixels drawn directly on the display stay until the canvas changes them
+        display.fillRect(0, 0, 10, 10, false);
+        canvas.setPixel(100, 50, false);
+        display.present(canvas);
+        display.update();
+
+        final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+        final OLEDDisplay expected = new OLEDDisplay(expectedTransport);
+        expected.fillRect(0, 0, 128, 64, true);
+        expected.fillRect(0, 0, 10, 10, false);
+        expected.setPixel(100, 50, false);
+        expected.update();
+        assertArrayEquals(expectedTransport.getMemory(), transport.getMemory());
+    }
+
+    @Test
+    public void pagesPresentedByParallelThreadsAreMerged() throws IOException, InterruptedException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+        final OLEDDisplay expected = new OLEDDisplay(expectedTransport);
+
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int page = 0; page < 8; page++) {
+            final int stripe = page;
+            final Canvas canvas = display.createCanvas();
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int frame = 0; frame < FRAMES; frame++) {
+                            canvas.fillRect(0, stripe * 8, 128, 8, false);
+                            canvas.drawString("page " + stripe + " " + frame, Font.FONT_5X8, stripe * 4, stripe * 8, true);
+                            display.presentPages(canvas, stripe, stripe);
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            expected.drawString("page " + stripe + " " + (FRAMES - 1), Font.FONT_5X8, stripe * 4, stripe * 8, true);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        //merges and sends while the threads are still presenting
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                display.update();
+                thread.join(1);
+            }
+        }
+        assertNull(error.get());
+        DisplayTestSupport.assertSameMemory("merged pages", display, transport, expected, expectedTransport);
+    }
+
+    @Test
+    public void changesOutsideOfThePagesStayInTheCanvas() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+        final OLEDDisplay expected = new OLEDDisplay(expectedTransport);
+
+        final Canvas canvas = display.createCanvas();
+        canvas.fillRect(0, 4, 128, 8, true);
+        display.presentPages(canvas, 0, 0);
+        expected.fillRect(0, 4, 128, 4, true);
+        DisplayTestSupport.assertSameMemory("first page", display, transport, expected, expectedTransport);
+
+        display.presentPages(canvas, 1, 7);
+        expected.fillRect(0, 8, 128, 4, true);
+        DisplayTestSupport.assertSameMemory("remaining pages", display, transport, expected, expectedTransport);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPageRangeIsRejected() throws IOException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport());
+        display.presentPages(display.createCanvas(), 3, 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void canvasWithAnotherRotationIsRejected() throws IOException {
+        final OLEDDisplay display = new OLEDDisplay(new VirtualDisplayTransport(), Rotation.DEG_90);
+        display.present(new Canvas(Rotation.DEG_0));
+    }
+
+    static void drawFrame(Canvas canvas, Random random, int frame) {
+        final int width = canvas.getWidth();
+        final int height = canvas.getHeight();
+        canvas.fillRect(random.nextInt(width), random.nextInt(height), random.nextInt(40), random.nextInt(20), random.nextBoolean());
+        canvas.drawString("frame " + frame, Font.FONT_5X8, random.nextInt(width) - 20, random.nextInt(height), true);
+        canvas.setPixel(random.nextInt(width), random.nextInt(height), random.nextBoolean());
+    }
+
+    static void drawFrame(OLEDDisplay display, Random random, int frame) {
+        final int width = display.getWidth();
+        final int height = display.getHeight();
+        display.fillRect(random.nextInt(width), random.nextInt(height), random.nextInt(40), random.nextInt(20), random.nextBoolean());
+        display.drawString("frame " + frame, Font.FONT_5X8, random.nextInt(width) - 20, random.nextInt(height), true);
+        display.setPixel(random.nextInt(width), random.nextInt(height), random.nextBoolean());
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.spi.SpiDevice;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Drives SpiTransport with a fake SPI device and D/C pin that forward
+ * the transmissions to a VirtualDisplayTransport, depending on the level
+ * of the D/C pin.
+ *
+ * @author Florian Frankenberger
+ */
+public class SpiTransportTest {
+
+    @Test
+    public void displayOverSpiShowsTheSameImage() throws IOException {
+        final VirtualDisplayTransport spiMemory = new VirtualDisplayTransport();
+        final FakeSpi spi = new FakeSpi(spiMemory);
+        final OLEDDisplay spiDisplay = new OLEDDisplay(new SpiTransport(spi.device, spi.dataCommandPin, null));
+
+        final VirtualDisplayTransport expectedMemory = new VirtualDisplayTransport();
+        final OLEDDisplay expected = new OLEDDisplay(expectedMemory);
+
+        spiDisplay.setChunkSize(1024);
+        for (OLEDDisplay display : new OLEDDisplay[] {spiDisplay, expected}) {
+            display.drawStringCentered("SPI", Font.FONT_5X8, 20, true);
+            display.fillRect(10, 40, 30, 10, true);
+            display.update();
+            display.setPixel(100, 5, true);
+            display.update();
+        }
+        assertArrayEquals(expectedMemory.getMemory(), spiMemory.getMemory());
+    }
+
+    @Test
+    public void dataCommandPinOnlyTogglesOnModeChanges() throws IOException {
+        final FakeSpi spi = new FakeSpi(new VirtualDisplayTransport());
+        final SpiTransport transport = new SpiTransport(spi.device, spi.dataCommandPin, null);
+        spi.pinChanges.clear();
+
+        transport.writeCommands(new byte[] {(byte) 0xAF}, 0, 1);
+        transport.writeData(new byte[] {1, 2}, 0, 2);
+        transport.writeData(new byte[] {3}, 0, 1);
+        transport.writeCommands(new byte[] {(byte) 0xAE}, 0, 1);
+
+        final List<String> expected = new ArrayList<String>();
+        expected.add("high");
+        expected.add("low");
+        assertEquals(expected, spi.pinChanges);
+    }
+
+    @Test
+    public void largeWritesAreSplitIntoSupportedSizes() throws IOException {
+        final FakeSpi spi = new FakeSpi(new VirtualDisplayTransport());
+        final SpiTransport transport = new SpiTransport(spi.device, spi.dataCommandPin, null);
+
+        final int length = SpiDevice.MAX_SUPPORTED_BYTES * 2 + 1;
+        transport.writeData(new byte[length], 0, length);
+        assertEquals(3, spi.writeSizes.size());
+        for (int size : spi.writeSizes) {
+            assertTrue(size <= SpiDevice.MAX_SUPPORTED_BYTES);
+        }
+    }
+
+    /**
+     * an SPI device and D/C pin whose writes end up in a
+     * VirtualDisplayTransport
+     */
+    private static class FakeSpi implements InvocationHandler {
+
+        private final VirtualDisplayTransport display;
+        private final SpiDevice device;
+        private final GpioPinDigitalOutput dataCommandPin;
+        private final List<String> pinChanges = new ArrayList<String>();
+        private final List<Integer> writeSizes = new ArrayList<Integer>();
+        private boolean dataMode;
+
+        FakeSpi(VirtualDisplayTransport display) {
+            this.display = display;
+            final ClassLoader loader = getClass().getClassLoader();
+            this.device = (SpiDevice) Proxy.newProxyInstance(loader, new Class<?>[] {SpiDevice.class}, this);
+            this.dataCommandPin = (GpioPinDigitalOutput) Proxy.newProxyInstance(loader,
+                    new Class<?>[] {GpioPinDigitalOutput.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            final String name = method.getName();
+            if (proxy == dataCommandPin && (name.equals("high") || name.equals("low"))) {
+                pinChanges.add(name);
+                dataMode = name.equals("high");
+                return null;
+            }
+            if (proxy == device && name.equals("write") && args.length == 3 && args[0] instanceof byte[]) {
+                final byte[] data = (byte[]) args[0];
+                final int offset = (Integer) args[1];
+                final int length = (Integer) args[2];
+                writeSizes.add(length);
+                if (dataMode) {
+                    display.writeData(data, offset, length);
+                } else {
+                    display.writeCommands(data, offset, length);
+                }
+                return new byte[0];
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks which data update() transmits.
+ *
+ * @author Florian Frankenberger
+ */
+public class UpdateTest {
+
+    @Test
+    public void updateWithoutChangesSendsNothing() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.drawString("hello", Font.FONT_5X8, 10, 10, true);
+        display.update();
+        transport.resetCounters();
+        display.update();
+        assertEquals(0, transport.getTransmissions());
+    }
+
+    @Test
+    public void onlyTheChangedColumnsAreSent() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.update();
+        transport.resetCounters();
+
+        display.setPixel(10, 3, true);
+        display.setPixel(12, 3, true);
+        display.update();
+        assertEquals(3, transport.getDataBytes());
+    }
+
+    @Test
+    public void narrowWindowOverSeveralPagesIsSentAsOneBlock() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setChunkSize(1024);
+        display.update();
+        transport.resetCounters();
+
+        //neighbouring spans on pages 0 - 2 are merged into one window
+        display.setPixel(10, 0, true);
+        display.setPixel(11, 9, true);
+        display.setPixel(12, 17, true);
+        display.update();
+
+        //one command transmission addressing the window, one for its data
+        assertEquals(2, transport.getTransmissions());
+        assertEquals(9, transport.getDataBytes());
+        final byte[] expected = new byte[128 * 8];
+        expected[10] = 0x01;
+        expected[128 + 11] = 0x02;
+        expected[256 + 12] = 0x02;
+        assertArrayEquals(expected, transport.getMemory());
+    }
+
+}
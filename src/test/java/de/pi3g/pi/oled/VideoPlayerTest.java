@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import de.pi3g.pi.oled.OLEDDisplay.Rotation;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Plays raw gray scale videos on virtual displays.
+ *
+ * @author Florian Frankenberger
+ */
+public class VideoPlayerTest {
+
+    private static final int FRAMES = 10;
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("pi-oled", ".gray");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void playsAllFramesScaledToTheDisplay() throws IOException, InterruptedException {
+        final Random random = new Random(11);
+        for (Rotation rotation : Rotation.values()) {
+            final int width = 50 + random.nextInt(100);
+            final int height = 30 + random.nextInt(100);
+            //an incomplete frame at the end is ignored
+            final byte[] video = new byte[width * height * FRAMES + 7];
+            random.nextBytes(video);
+            writeFile(video);
+
+            final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+            final OLEDDisplay display = new OLEDDisplay(transport, rotation);
+            final VideoPlayer player = new VideoPlayer(display, file, width, height, 200, false);
+            assertEquals(FRAMES, player.getFrameCount());
+            player.start();
+            player.waitFor();
+            assertEquals(FRAMES, player.getShownFrames() + player.getDroppedFrames());
+
+            //the last frame scaled with nearest neighbour
+            final VirtualDisplayTransport expectedTransport = new VirtualDisplayTransport();
+            final OLEDDisplay expected = new OLEDDisplay(expectedTransport, rotation);
+            final int displayWidth = expected.getWidth();
+            final int displayHeight = expected.getHeight();
+            final byte[] scaled = new byte[displayWidth * displayHeight];
+            final int last = (FRAMES - 1) * width * height;
+            for (int y = 0; y < displayHeight; y++) {
+                for (int x = 0; x < displayWidth; x++) {
+                    scaled[y * displayWidth + x] = video[last + (y * height / displayHeight) * width + x * width / displayWidth];
+                }
+            }
+            expected.drawGrayFrame(scaled, 0, displayWidth, displayHeight, 0, 0);
+            expected.update();
+            assertArrayEquals(rotation.toString(), expectedTransport.getMemory(), transport.getMemory());
+        }
+    }
+
+    @Test
+    public void stopEndsALoopedVideo() throws IOException, InterruptedException {
+        writeFile(new byte[128 * 64 * FRAMES]);
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        final VideoPlayer player = new VideoPlayer(display, file, 128, 64, 50, true);
+        player.start();
+        Thread.sleep(300);
+        player.stop();
+        player.waitFor();
+
+        final long shown = player.getShownFrames();
+        assertTrue(shown > 0);
+        Thread.sleep(100);
+        assertEquals(shown, player.getShownFrames());
+
+        //the display still works after the playback was stopped
+        display.setPixel(0, 0, true);
+        display.update();
+        assertTrue(transport.isPixelSet(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFrameRateIsRejected() throws IOException {
+        writeFile(new byte[128 * 64]);
+        new VideoPlayer(new OLEDDisplay(new VirtualDisplayTransport()), file, 128, 64, 0, false);
+    }
+
+    private void writeFile(byte[] content) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+}
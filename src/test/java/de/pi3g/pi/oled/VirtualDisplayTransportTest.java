@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, Florian Frankenberger
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * * Neither the name of the copyright holder nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.pi3g.pi.oled;
+
+import java.io.IOException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the emulation of the SSD1306 commands by VirtualDisplayTransport.
+ *
+ * @author Florian Frankenberger
+ */
+public class VirtualDisplayTransportTest {
+
+    @Test
+    public void horizontalAddressingWrapsWithinTheWindow() {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        //horizontal mode, columns 10 - 11, pages 2 - 3
+        transport.writeCommands(new byte[] {0x20, 0x00, 0x21, 10, 11, 0x22, 2, 3}, 0, 8);
+        transport.writeData(new byte[] {1, 2, 3, 4, 5}, 0, 5);
+
+        final byte[] memory = transport.getMemory();
+        assertEquals(2, memory[2 * 128 + 11]);
+        assertEquals(3, memory[3 * 128 + 10]);
+        assertEquals(4, memory[3 * 128 + 11]);
+        //the fifth byte starts again at the first column and page
+        assertEquals(5, memory[2 * 128 + 10]);
+    }
+
+    @Test
+    public void pageAddressingUsesPageAndColumnCommands() {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        //page mode, page 5, column 0x23
+        transport.writeCommands(new byte[] {0x20, 0x02, (byte) 0xB5, 0x03, 0x12}, 0, 5);
+        transport.writeData(new byte[] {(byte) 0x80}, 0, 1);
+        assertTrue(transport.isPixelSet(0x23, 5 * 8 + 7));
+        assertFalse(transport.isPixelSet(0x23, 5 * 8 + 6));
+    }
+
+    @Test
+    public void displayStateCommands() {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        transport.writeCommands(new byte[] {(byte) 0xAF, (byte) 0x81, 0x10, (byte) 0xA7}, 0, 4);
+        assertTrue(transport.isDisplayOn());
+        assertEquals(0x10, transport.getContrast());
+        assertTrue(transport.isInverted());
+        //inverted: the cleared memory is lit
+        assertTrue(transport.isPixelLit(0, 0));
+
+        transport.writeCommands(new byte[] {(byte) 0xAE}, 0, 1);
+        assertFalse(transport.isPixelLit(0, 0));
+    }
+
+    @Test
+    public void commandsSplitAcrossTransmissionsAreParsed() {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        transport.writeCommands(new byte[] {(byte) 0x81}, 0, 1);
+        transport.writeCommands(new byte[] {0x33}, 0, 1);
+        assertEquals(0x33, transport.getContrast());
+    }
+
+    @Test
+    public void countsTransmissionsAndBytes() throws IOException {
+        final VirtualDisplayTransport transport = new VirtualDisplayTransport();
+        final OLEDDisplay display = new OLEDDisplay(transport);
+        display.setChunkSize(256);
+        transport.resetCounters();
+        display.update();
+        assertEquals(1024, transport.getDataBytes());
+        //one addressing transmission and four data chunks
+        assertEquals(5, transport.getTransmissions());
+    }
+
+}